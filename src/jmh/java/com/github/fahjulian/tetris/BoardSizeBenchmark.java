@@ -0,0 +1,145 @@
+package com.github.fahjulian.tetris;
+
+import com.github.fahjulian.tetris.engine.Board;
+import com.github.fahjulian.tetris.engine.BoardFixtures;
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.engine.Input;
+import com.github.fahjulian.tetris.gameobject.Tile;
+import com.github.fahjulian.tetris.ui.SnapshotBuffer;
+import com.github.fahjulian.tetris.ui.Viewport;
+import com.github.fahjulian.tetris.util.GameState;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per tick work of a game on half full square boards of growing size. Moving, testing and
+ * publishing the current tile and painting the viewport stay flat, clearing a row grows with the
+ * width of the row only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BoardSizeBenchmark
+{
+  @State(Scope.Thread)
+  public static class Running
+  {
+    @Param({ "20", "100", "1000" })
+    public int size;
+
+    Engine engine;
+    SnapshotBuffer snapshots;
+    Grid grid;
+    BufferedImage image;
+    Graphics2D g;
+
+    @Setup
+    public void setup()
+    {
+      engine = new Engine(size, size, 42);
+      BoardFixtures.fill(engine.getBoard(), 0.5, 42);
+      snapshots = new SnapshotBuffer(size, size);
+      snapshots.publish(engine, GameState.INGAME, 12345, 0);
+
+      Viewport viewport = new Viewport(size, size, Grid.BLOCKSIZE, Game.MAX_GRID_WIDTH, Game.MAX_GRID_HEIGHT);
+      grid = new Grid(snapshots, viewport, Game.PADDING);
+      image = new BufferedImage(viewport.getWidth() + 2 * Game.PADDING, viewport.getHeight() + 2 * Game.PADDING,
+          BufferedImage.TYPE_INT_RGB);
+      g = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+      g.dispose();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class BottomRow
+  {
+    @Param({ "20", "100", "1000" })
+    public int size;
+
+    Board board;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+      board = new Board(size, size);
+      BoardFixtures.fill(board, 0.5, 42);
+    }
+
+    /**
+     * Complete the bottom row, refilling the board once all filled rows are cleared
+     */
+    @Setup(Level.Invocation)
+    public void setupInvocation()
+    {
+      if (board.isRowEmpty(size - 1)) BoardFixtures.fill(board, 0.5, 42);
+      BoardFixtures.completeBottomRows(board, 1);
+    }
+  }
+
+  /**
+   * Move the current tile down by one row, locking it and clearing rows once it lands
+   */
+  @Benchmark
+  public boolean gravity(Running state)
+  {
+    state.engine.step(Input.NONE, Engine.TICKS_PER_SECOND + 1);
+    if (state.engine.isGameOver()) state.engine.reset();
+    return state.engine.isGameOver();
+  }
+
+  @Benchmark
+  public int hitTest(Running state)
+  {
+    return state.engine.getBoard().hitTest(Tile.T, 0, state.size / 2 - 2, state.size / 2 - 2);
+  }
+
+  /**
+   * Publish the game while the board did not change, as after most updates
+   */
+  @Benchmark
+  public Object publish(Running state)
+  {
+    return state.snapshots.publish(state.engine, GameState.INGAME, 12345, 0);
+  }
+
+  @Benchmark
+  public BufferedImage paintGrid(Running state)
+  {
+    state.grid.paintComponent(state.g);
+    return state.image;
+  }
+
+  /**
+   * Check and erase the completed bottom row, as done when a tile locks
+   */
+  @Benchmark
+  public boolean clearRow(BottomRow state)
+  {
+    boolean full = state.board.isRowFull(state.size - 1);
+    if (full) state.board.eraseRow(state.size - 1);
+    return full;
+  }
+}
@@ -0,0 +1,82 @@
+package com.github.fahjulian.tetris;
+
+import com.github.fahjulian.tetris.engine.BoardFixtures;
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.ui.SnapshotBuffer;
+import com.github.fahjulian.tetris.ui.Viewport;
+import com.github.fahjulian.tetris.util.GameState;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Painting the grid and the HUD into an offscreen image
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RenderBenchmark
+{
+  @Param({ "0", "0.25", "0.5", "0.75" })
+  public double fill;
+
+  private BufferedImage image;
+  private Graphics2D g;
+  private Grid grid;
+  private HUD hud;
+
+  @Setup
+  public void setup()
+  {
+    Engine engine = new Engine(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, 42);
+    BoardFixtures.fill(engine.getBoard(), fill, 42);
+    SnapshotBuffer snapshots = new SnapshotBuffer(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS);
+    snapshots.publish(engine, GameState.INGAME, 12345, 0);
+
+    Viewport viewport = new Viewport(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, Grid.BLOCKSIZE, Game.MAX_GRID_WIDTH,
+        Game.MAX_GRID_HEIGHT);
+    grid = new Grid(snapshots, viewport, Game.PADDING);
+    hud = new HUD(snapshots, Game.HUD_GRID_WIDTH, Game.HUD_GRID_HEIGHT, Game.PADDING);
+
+    image = new BufferedImage(viewport.getWidth() + 2 * Game.PADDING, viewport.getHeight() + 2 * Game.PADDING, 
+        BufferedImage.TYPE_INT_RGB);
+    g = image.createGraphics();
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    g.dispose();
+  }
+
+  @Benchmark
+  public BufferedImage paintGrid()
+  {
+    grid.paintComponent(g);
+    return image;
+  }
+
+  @Benchmark
+  public BufferedImage paintHUD()
+  {
+    hud.paintComponent(g);
+    return image;
+  }
+}
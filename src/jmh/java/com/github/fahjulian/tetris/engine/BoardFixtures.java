@@ -0,0 +1,44 @@
+package com.github.fahjulian.tetris.engine;
+
+import com.github.fahjulian.tetris.gameobject.Tile;
+
+import java.util.Random;
+
+/**
+ * Reproducible board contents for the benchmarks
+ */
+public class BoardFixtures
+{
+  /**
+   * Fill the bottom rows of a board with blocks, leaving one random gap per row so no row is complete
+   * @param board The board to fill, will be cleared first
+   * @param fill Fraction of the rows to fill (between 0 and 1)
+   * @param seed Seed of the gap positions and block colors
+   */
+  public static void fill(Board board, double fill, long seed)
+  {
+    Random random = new Random(seed);
+    Tile[] tiles = Tile.values();
+    int filledRows = (int) (board.getRows() * fill);
+
+    board.clear();
+    for (int row = board.getRows() - filledRows; row < board.getRows(); row++)
+    {
+      int gap = random.nextInt(board.getCols());
+      for (int col = 0; col < board.getCols(); col++)
+        if (col != gap) board.setTile(row, col, tiles[random.nextInt(tiles.length)]);
+    }
+  }
+
+  /**
+   * Complete the bottom rows of a board by filling their gaps
+   * @param board The board to complete the rows of
+   * @param rows The amount of rows to complete
+   */
+  public static void completeBottomRows(Board board, int rows)
+  {
+    for (int row = board.getRows() - rows; row < board.getRows(); row++)
+      for (int col = 0; col < board.getCols(); col++)
+        if (board.getTile(row, col) == null) board.setTile(row, col, Tile.I);
+  }
+}
@@ -0,0 +1,82 @@
+package com.github.fahjulian.tetris.engine;
+
+import com.github.fahjulian.tetris.Grid;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every {@code CollisionManager} predicate with the current tile resting on the stack
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionBenchmark
+{
+  @Param({ "0", "0.25", "0.5", "0.75" })
+  public double fill;
+
+  private CollisionManager collisionManager;
+
+  @Setup
+  public void setup()
+  {
+    Engine engine = new Engine(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, 42);
+    BoardFixtures.fill(engine.getBoard(), fill, 42);
+    collisionManager = engine.getCollisionManager();
+
+    // Let the current tile fall onto the stack
+    while (collisionManager.canTileMoveDown())
+      engine.step(Input.NONE, Engine.TICKS_PER_SECOND + 1);
+  }
+
+  @Benchmark
+  public boolean canTileMoveDown()
+  {
+    return collisionManager.canTileMoveDown();
+  }
+
+  @Benchmark
+  public boolean canTileMoveLeft()
+  {
+    return collisionManager.canTileMoveHorizontically(-1);
+  }
+
+  @Benchmark
+  public boolean canTileMoveRight()
+  {
+    return collisionManager.canTileMoveHorizontically(1);
+  }
+
+  @Benchmark
+  public boolean canTileRotate()
+  {
+    return collisionManager.canTileRotate();
+  }
+
+  @Benchmark
+  public boolean hasPlayerLost()
+  {
+    return collisionManager.hasPlayerLost();
+  }
+
+  @Benchmark
+  public boolean hasTileHitBlock()
+  {
+    return collisionManager.hasTileHitBlock();
+  }
+}
@@ -0,0 +1,106 @@
+package com.github.fahjulian.tetris.engine;
+
+import com.github.fahjulian.tetris.Grid;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per frame update of the engine and clearing of complete rows
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark
+{
+  /** The amount of ticks of one frame at 60 FPS */
+  private static final int FRAME_TICKS;
+
+  static
+  {
+    FRAME_TICKS = Engine.TICKS_PER_SECOND / 60;
+  }
+
+  @State(Scope.Thread)
+  public static class Running
+  {
+    @Param({ "0", "0.25", "0.5", "0.75" })
+    public double fill;
+
+    Engine engine;
+
+    @Setup
+    public void setup()
+    {
+      engine = new Engine(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, 42);
+      BoardFixtures.fill(engine.getBoard(), fill, 42);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class CompleteRows
+  {
+    @Param({ "0.25", "0.5", "0.75" })
+    public double fill;
+
+    @Param({ "1", "2", "3", "4" })
+    public int clearedRows;
+
+    Engine engine;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+      engine = new Engine(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, 42);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation()
+    {
+      BoardFixtures.fill(engine.getBoard(), fill, 42);
+      BoardFixtures.completeBottomRows(engine.getBoard(), clearedRows);
+    }
+  }
+
+  /**
+   * One frame worth of game time without any input, as done by the game loop
+   */
+  @Benchmark
+  public boolean update(Running state)
+  {
+    state.engine.step(Input.NONE, FRAME_TICKS);
+    if (state.engine.isGameOver()) state.engine.reset();
+    return state.engine.isGameOver();
+  }
+
+  /**
+   * Move the current tile down by one row, locking it and clearing rows once it lands
+   */
+  @Benchmark
+  public boolean gravity(Running state)
+  {
+    state.engine.step(Input.NONE, Engine.TICKS_PER_SECOND + 1);
+    if (state.engine.isGameOver()) state.engine.reset();
+    return state.engine.isGameOver();
+  }
+
+  @Benchmark
+  public int clearCompleteRows(CompleteRows state)
+  {
+    return state.engine.clearCompleteRows();
+  }
+}
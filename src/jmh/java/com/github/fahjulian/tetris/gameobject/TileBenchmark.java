@@ -0,0 +1,48 @@
+package com.github.fahjulian.tetris.gameobject;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Getting the blocks of a tile as objects compared to iterating its precomputed cells
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TileBenchmark
+{
+  @Param({ "CUBE", "T", "I", "L" })
+  public Tile tile;
+
+  @Param({ "0", "1" })
+  public int rotation;
+
+  @Benchmark
+  public ArrayList<Block> toBlockArray()
+  {
+    return tile.toBlockArray(rotation, 3, 0);
+  }
+
+  @Benchmark
+  public int iterateCells()
+  {
+    int sum = 0;
+    for (int cell = 0; cell < Tile.CELLS; cell++)
+      sum += tile.getCellRow(rotation, cell) * 4 + tile.getCellCol(rotation, cell);
+    return sum;
+  }
+}
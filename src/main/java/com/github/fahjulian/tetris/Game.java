@@ -1,9 +1,31 @@
 package com.github.fahjulian.tetris;
 
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.engine.Input;
+import com.github.fahjulian.tetris.metrics.Metrics;
+import com.github.fahjulian.tetris.metrics.PrometheusServer;
+import com.github.fahjulian.tetris.net.SpectatorStream;
+import com.github.fahjulian.tetris.replay.ReplayPlayer;
+import com.github.fahjulian.tetris.replay.ReplayReader;
+import com.github.fahjulian.tetris.replay.ReplayRecorder;
+import com.github.fahjulian.tetris.replay.SnapshotFile;
+import com.github.fahjulian.tetris.ui.GameCanvas;
+import com.github.fahjulian.tetris.ui.SnapshotBuffer;
+import com.github.fahjulian.tetris.ui.Viewport;
 import com.github.fahjulian.tetris.ui.Window;
-import com.github.fahjulian.tetris.util.Direction;
 import com.github.fahjulian.tetris.util.Database;
+import com.github.fahjulian.tetris.util.FramePacer;
+import com.github.fahjulian.tetris.util.GameRecord;
 import com.github.fahjulian.tetris.util.GameState;
+import com.github.fahjulian.tetris.util.KeyEventQueue;
+import com.github.fahjulian.tetris.util.TimeSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import java.awt.event.KeyListener;
 import java.awt.event.KeyEvent;
@@ -12,42 +34,113 @@ import java.awt.BorderLayout;
 public class Game implements Runnable 
 {
   private static final int FPS;
-  private static final int FRAMETIME;
+  /** The time between two rendered frames in nanoseconds */
+  private static final long FRAMETIME;
+  /** The amount of engine ticks simulated per update */
+  private static final int UPDATE_TICKS;
+  /** The game time simulated per update in nanoseconds */
+  private static final long UPDATE_TIME;
+  /** The maximum amount of updates to catch up with in one frame before dropping the backlog */
+  private static final int MAX_CATCH_UP_UPDATES;
+  /** The maximum amount of key events waiting for the next update */
+  private static final int INPUT_CAPACITY;
+  /** Whether to render actively from the game loop instead of repainting Swing components */
+  private static final boolean ACTIVE_RENDERING;
   private static final String WINDOW_TITLE;
-  private static final int CONTENT_WIDTH;
-  private static final int CONTENT_HEIGHT;
+  /** The size of the board, see {@code -Dtetris.rows} and {@code -Dtetris.cols} */
+  private static final int ROWS;
+  private static final int COLS;
+  /** The largest board that can be configured in both directions */
+  private static final int MAX_BOARD_SIZE;
+  /** The largest part of the board shown at once, larger boards are scaled down and scrolled */
+  public static final int MAX_GRID_WIDTH;
+  public static final int MAX_GRID_HEIGHT;
+  /** The least height of the grid's area, leaving room for the HUD's score */
+  private static final int MIN_GRID_HEIGHT;
   public static final int PADDING;
-  public static final int GRID_WIDTH;
-  public static final int GRID_HEIGHT;
   public static final int HUD_GRID_WIDTH;
   public static final int HUD_GRID_HEIGHT;
-
+  /** The directory every game is recorded to */
+  private static final File REPLAY_DIRECTORY;
+  /** The amount of replays kept, see {@code -Dtetris.replays}, 0 to keep all */
+  private static final int MAX_REPLAYS;
+  /** The file the current game is saved to, continued when the game is started again */
+  private static final File SNAPSHOT_FILE;
+  /** The amount of updates between two saves while playing */
+  private static final int SNAPSHOT_UPDATES;
+
+  /** The replay to show instead of letting the player play, or {@code null} */
+  private final ReplayReader replay;
   private boolean running;
   private Window window;
+  private Engine engine;
   private Grid grid;
   private HUD hud;
+  private GameCanvas canvas;
+  /** Snapshots of the game, published by the game thread for rendering */
+  private SnapshotBuffer snapshots;
   private int highscore;
-  private int score;
+  /** Opens the database and reads the highscore in the background, {@code null} once read */
+  private FutureTask<Integer> highscoreLoader;
   private int gameoverScore;
-  private int totalClearedRows;
   private GameState state;
+  private ReplayRecorder recorder;
+  private ReplayPlayer replayPlayer;
+  private SpectatorStream spectators;
+  private SnapshotFile snapshotFile;
+  private int updatesSinceSnapshot;
+
+  /** Key events received from the window, applied by the game thread */
+  private final KeyEventQueue keyEvents;
+  private boolean accelerated;
+  /** When the inputs applied since the last frame happened, to measure their latency */
+  private final long[] inputTimestamps;
+  private int inputCount;
+  // The totals of the current game already added to the metrics
+  private int countedPieces;
+  private int countedRows;
 
   static 
   {
-    FPS = 60;
-    FRAMETIME = 1000 / FPS;
+    FPS = Math.max(Integer.getInteger("tetris.fps", 60), 1);
+    FRAMETIME = 1000000000L / FPS;
+    UPDATE_TICKS = Math.max(Engine.TICKS_PER_SECOND / Math.max(Integer.getInteger("tetris.updateRate", 200), 1), 1);
+    UPDATE_TIME = UPDATE_TICKS * 1000000000L / Engine.TICKS_PER_SECOND;
+    MAX_CATCH_UP_UPDATES = 25;
+    INPUT_CAPACITY = 256;
+    ACTIVE_RENDERING = !"passive".equals(System.getProperty("tetris.rendering"));
     WINDOW_TITLE = "Tetris";
+    MAX_BOARD_SIZE = 1000;
+    // Tiles spawn in 4 columns and need 4 rows to rotate
+    ROWS = Math.min(Math.max(Integer.getInteger("tetris.rows", Grid.DEFAULT_ROWS), 4), MAX_BOARD_SIZE);
+    COLS = Math.min(Math.max(Integer.getInteger("tetris.cols", Grid.DEFAULT_COLS), 4), MAX_BOARD_SIZE);
+    MAX_GRID_WIDTH = 1000;
+    MAX_GRID_HEIGHT = 750;
+    MIN_GRID_HEIGHT = 250;
     PADDING = 50;
-    GRID_WIDTH = Grid.BLOCKSIZE * Grid.COLS;
-    GRID_HEIGHT = Grid.BLOCKSIZE * Grid.ROWS;
     HUD_GRID_WIDTH = Grid.BLOCKSIZE * 4;
     HUD_GRID_HEIGHT = Grid.BLOCKSIZE * 4;
-    CONTENT_WIDTH = GRID_WIDTH + HUD_GRID_WIDTH + 3 * PADDING + 2;
-    CONTENT_HEIGHT = GRID_HEIGHT + 2 * PADDING + 1;
+    REPLAY_DIRECTORY = new File("./.tetris-replays");
+    MAX_REPLAYS = Math.max(Integer.getInteger("tetris.replays", 100), 0);
+    SNAPSHOT_FILE = new File("./.tetris-snapshot");
+    // 10 times per second
+    SNAPSHOT_UPDATES = Math.max((int) (100000000L / UPDATE_TIME), 1);
   }
 
   public Game() 
   {
+    this(null);
+  }
+
+  /**
+   * Constructs a new game showing a replay in real time instead of letting the player play
+   * @param replay The replay to show, or {@code null} to play
+   */
+  public Game(ReplayReader replay)
+  {
+    this.replay = replay;
+    this.keyEvents = new KeyEventQueue(INPUT_CAPACITY);
+    this.inputTimestamps = new long[INPUT_CAPACITY];
     new Thread(this).start();
   }
 
@@ -67,39 +160,23 @@ public class Game implements Runnable
   public void gameover()
   {
     state = GameState.GAMEOVER;
-    restart();
-  }
-
-  /**
-   * Update the score for the amount of cleared rows using the official tetris score system.
-   * @param cleared_rows The amount of rows that have been cleared at one time
-   */
-  public void updateScore(int clearedRows)
-  {
-    int points = 0;
-    switch (clearedRows)
+    if (replay != null)
     {
-      case 1: points = 40; break;
-      case 2: points = 100; break;
-      case 3: points = 300; break;
-      case 4: points = 1200; break;
-      default: return;
+      gameoverScore = engine.getScore();
+      return;
     }
 
-    points *= totalClearedRows / 10 + 1;
-    totalClearedRows += clearedRows;
-    score += points;
-
-    if (score > highscore) 
-    {
-      highscore = score;
-      Database.saveHighscore(highscore);
-    }
+    Database.recordGame(new GameRecord(System.currentTimeMillis(), engine.getScore(), engine.getClearedRows(),
+        engine.getPiecesLocked(), engine.getTicks() * 1000 / Engine.TICKS_PER_SECOND, engine.getSeed()));
+    recorder.finish();
+    if (snapshotFile != null) snapshotFile.clear();
+    restart();
+    recorder.start(engine);
   }
 
   public int getScore()
   { 
-    return score;
+    return engine.getScore();
   }
 
   public int getHighscore()
@@ -119,57 +196,88 @@ public class Game implements Runnable
 
   private void init() 
   {
-    Database.init();
-    score = 0;
-    highscore = Database.getHighscore();
-    totalClearedRows = 0;
+    startLoading();
     state = GameState.NEW_GAME;
 
-    window = new Window(WINDOW_TITLE, CONTENT_WIDTH, CONTENT_HEIGHT);
-    grid = new Grid(this, GRID_WIDTH, GRID_HEIGHT, PADDING);
-    hud = new HUD(this, HUD_GRID_WIDTH, HUD_GRID_HEIGHT, PADDING);
+    if (replay != null)
+    {
+      replayPlayer = new ReplayPlayer(replay, TimeSource.SYSTEM);
+      engine = replayPlayer.getEngine();
+    }
+    else
+    {
+      engine = new Engine(ROWS, COLS);
+      recorder = new ReplayRecorder(REPLAY_DIRECTORY, MAX_REPLAYS);
+      if (restoreSnapshot())
+      {
+        // The replay of a continued game would start from the wrong board, the next game is recorded
+        state = GameState.PAUSED;
+        countedPieces = engine.getPiecesLocked();
+        countedRows = engine.getClearedRows();
+      }
+      else
+      {
+        recorder.start(engine);
+      }
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        @Override
+        public void run()
+        {
+          recorder.finish();
+        }
+      });
+    }
+
+    Integer spectatorPort = Integer.getInteger("tetris.spectatorPort");
+    if (spectatorPort != null)
+    {
+      spectators = new SpectatorStream(engine);
+      try
+      {
+        spectators.listen(spectatorPort);
+      }
+      catch (IOException e)
+      {
+        e.printStackTrace();
+      }
+    }
+
+    // A replay brings the size of its board
+    Viewport viewport = new Viewport(engine.getRows(), engine.getCols(), Grid.BLOCKSIZE, MAX_GRID_WIDTH, MAX_GRID_HEIGHT);
+    int contentWidth = viewport.getWidth() + HUD_GRID_WIDTH + 3 * PADDING + 2;
+    int contentHeight = Math.max(viewport.getHeight(), MIN_GRID_HEIGHT) + 2 * PADDING + 1;
 
-    window.add(grid, BorderLayout.CENTER);
-    window.add(hud, BorderLayout.EAST);
+    window = new Window(WINDOW_TITLE, contentWidth, contentHeight);
+    snapshots = new SnapshotBuffer(engine.getRows(), engine.getCols());
+    publish();
+    grid = new Grid(snapshots, viewport, PADDING);
+    hud = new HUD(snapshots, HUD_GRID_WIDTH, HUD_GRID_HEIGHT, PADDING);
+
+    if (ACTIVE_RENDERING)
+    {
+      canvas = new GameCanvas(contentWidth, contentHeight);
+      canvas.addLayer(grid, 0, 0);
+      canvas.addLayer(hud, contentWidth - hud.getPreferredSize().width, 0);
+      window.add(canvas, BorderLayout.CENTER);
+    }
+    else
+    {
+      window.add(grid, BorderLayout.CENTER);
+      window.add(hud, BorderLayout.EAST);
+    }
     window.addKeyListener(new KeyListener() {
       @Override
       public void keyPressed(KeyEvent e)
       {
-        switch (e.getKeyCode())
-        {
-          case KeyEvent.VK_DOWN:
-            grid.setAccelerated(true);
-            break;
-        }
+        if (!keyEvents.offer(e.getKeyCode(), true, System.nanoTime()))
+          Metrics.INPUTS_DROPPED.increment();
       }
 
       @Override 
       public void keyReleased(KeyEvent e) 
       {
-        switch (e.getKeyCode())
-        {
-          case KeyEvent.VK_DOWN:
-            grid.setAccelerated(false);
-            break;
-          case KeyEvent.VK_UP:
-            grid.rotateTile();
-            break;
-          case KeyEvent.VK_LEFT:
-            grid.setHorizonalDir(Direction.LEFT);
-            break;
-          case KeyEvent.VK_RIGHT:
-            grid.setHorizonalDir(Direction.RIGHT);
-            break;
-          case KeyEvent.VK_ENTER:
-            state = GameState.INGAME;
-            break;
-          case KeyEvent.VK_ESCAPE:
-            if (state == GameState.INGAME)
-              state = GameState.PAUSED;
-            else if (state == GameState.PAUSED)
-              state = GameState.INGAME;
-            break;
-        }
+        if (!keyEvents.offer(e.getKeyCode(), false, System.nanoTime()))
+          Metrics.INPUTS_DROPPED.increment();
       }
 
       @Deprecated @Override 
@@ -177,39 +285,177 @@ public class Game implements Runnable
     });
 
     window.setVisible(true);
-    hud.setTile(grid.getNextTile());
+  }
+
+  /**
+   * Start everything the first frame does not need on background threads at once, so the window
+   * shows right away: the database and the highscore, the score font and the metrics. The game
+   * shows a highscore of 0 and a fallback font until they are loaded.
+   */
+  private void startLoading()
+  {
+    highscoreLoader = new FutureTask<Integer>(new Callable<Integer>() {
+      @Override
+      public Integer call()
+      {
+        Database.init();
+        return Database.getHighscore();
+      }
+    });
+    startInBackground(highscoreLoader, "tetris-load-database");
+
+    startInBackground(new Runnable() {
+      @Override
+      public void run()
+      {
+        HUD.loadFont();
+      }
+    }, "tetris-load-font");
+
+    startInBackground(new Runnable() {
+      @Override
+      public void run()
+      {
+        Metrics.register();
+        Integer metricsPort = Integer.getInteger("tetris.metricsPort");
+        if (metricsPort == null) return;
+        try
+        {
+          new PrometheusServer(metricsPort);
+        }
+        catch (IOException e)
+        {
+          e.printStackTrace();
+        }
+      }
+    }, "tetris-load-metrics");
+  }
+
+  private static void startInBackground(Runnable task, String name)
+  {
+    Thread thread = new Thread(task, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Take over the highscore once the database has been read. Highscores saved meanwhile are kept
+   * by the database, so the higher of both counts.
+   */
+  private void collectHighscore()
+  {
+    if (highscoreLoader == null || !highscoreLoader.isDone()) return;
+    try
+    {
+      highscore = Math.max(highscore, highscoreLoader.get());
+    }
+    catch (InterruptedException | ExecutionException e)
+    {
+      e.printStackTrace();
+    }
+    highscoreLoader = null;
+  }
+
+  /**
+   * Map the {@link #SNAPSHOT_FILE} and continue the game saved in it, if any
+   * @return Whether a game was continued
+   */
+  private boolean restoreSnapshot()
+  {
+    try
+    {
+      snapshotFile = new SnapshotFile(SNAPSHOT_FILE, Engine.getMaxStateSize(ROWS, COLS, engine.getGenerator()));
+      return snapshotFile.restore(engine) && !engine.isGameOver();
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace();
+      return false;
+    }
+  }
+
+  /**
+   * Save the current game to the {@link #SNAPSHOT_FILE}
+   */
+  private void saveSnapshot()
+  {
+    if (snapshotFile == null) return;
+    long start = System.nanoTime();
+    snapshotFile.save(engine);
+    Metrics.SNAPSHOT_WRITE.record(System.nanoTime() - start);
+    updatesSinceSnapshot = 0;
   }
 
   private void start() 
   {
     running = true;
-    this.state = GameState.NEW_GAME;
     gameloop();
   }
 
+  /**
+   * Simulate the game in fixed updates of {@link #UPDATE_TIME}, independent of the frame rate, and
+   * render a frame every {@link #FRAMETIME}.
+   */
   private void gameloop() 
   {
+    FramePacer pacer = new FramePacer();
+    long previous = System.nanoTime();
+    long nextFrame = previous;
+    long accumulator = 0;
+    boolean firstFrame = true;
+
     while (running) 
     {
-      long start = System.nanoTime();
+      collectHighscore();
+      long now = System.nanoTime();
+      accumulator += now - previous;
+      previous = now;
+
+      // Simulate all the game time passed since the last frame, dropping what can not be caught up
+      int updates = 0;
+      while (accumulator >= UPDATE_TIME && updates < MAX_CATCH_UP_UPDATES)
+      {
+        processInput();
+        if (state == GameState.INGAME)
+        {
+          long start = System.nanoTime();
+          update();
+          Metrics.UPDATE.record(System.nanoTime() - start);
+          Metrics.UPDATES.increment();
+          if (state == GameState.INGAME && ++updatesSinceSnapshot >= SNAPSHOT_UPDATES) saveSnapshot();
+        }
+        publish();
+        if (spectators != null) spectators.tick();
+        accumulator -= UPDATE_TIME;
+        updates++;
+      }
+      if (accumulator >= UPDATE_TIME) 
+        accumulator %= UPDATE_TIME;
 
-      if (state == GameState.INGAME)
-        update();
+      long start = System.nanoTime();
       render();
+      long end = System.nanoTime();
+      Metrics.RENDER.record(end - start);
+      Metrics.FRAMES.increment();
+      if (firstFrame)
+      {
+        firstFrame = false;
+        long uptime = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        Metrics.FIRST_FRAME.record(uptime * 1000000L);
+      }
+      for (int i = 0; i < inputCount; i++)
+        Metrics.INPUT_LATENCY.record(end - inputTimestamps[i]);
+      inputCount = 0;
 
-      // Cap FPS by extending frametime if neccesary
-      int delta = (int) (System.nanoTime() - start) / (int) 1e6;
-      if (delta < FRAMETIME) 
+      // Schedule the next frame on the fixed frame grid, unless we fell behind by more than a frame
+      nextFrame += FRAMETIME;
+      if (nextFrame < end - FRAMETIME)
       {
-        try 
-        {
-          Thread.sleep(FRAMETIME - delta);
-        } 
-        catch (InterruptedException e) 
-        {
-          e.printStackTrace();
-        }
+        Metrics.MISSED_FRAMES.add((end - nextFrame) / FRAMETIME);
+        nextFrame = end;
       }
+      pacer.waitUntil(nextFrame);
+      Metrics.SLEEP_OVERSHOOT.record(pacer.getLastOvershoot());
     }
     quit();
   }
@@ -229,22 +475,108 @@ public class Game implements Runnable
 
   private void reset()
   {
-    grid.reset();
     state = GameState.GAMEOVER;
-    this.gameoverScore = score;
-    this.score = 0;
-    this.totalClearedRows = 0;
+    this.gameoverScore = engine.getScore();
+    engine.reset();
+    countedPieces = 0;
+    countedRows = 0;
+  }
+
+  /**
+   * Apply all key events received since the last update, in the order they happened
+   */
+  private void processInput()
+  {
+    while (keyEvents.poll())
+    {
+      boolean pressed = keyEvents.isPressed();
+      Input input = Input.NONE;
+
+      switch (keyEvents.getKeyCode())
+      {
+        case KeyEvent.VK_DOWN:
+          // Holding the key repeats the press, only the first one changes anything
+          if (pressed != accelerated)
+            input = pressed ? Input.ACCELERATE : Input.DECELERATE;
+          accelerated = pressed;
+          break;
+        case KeyEvent.VK_UP:
+          if (!pressed) input = Input.ROTATE;
+          break;
+        case KeyEvent.VK_LEFT:
+          if (!pressed) input = Input.LEFT;
+          break;
+        case KeyEvent.VK_RIGHT:
+          if (!pressed) input = Input.RIGHT;
+          break;
+        case KeyEvent.VK_ENTER:
+          if (!pressed) state = GameState.INGAME;
+          break;
+        case KeyEvent.VK_ESCAPE:
+          if (pressed) break;
+          if (state == GameState.INGAME)
+          {
+            state = GameState.PAUSED;
+            saveSnapshot();
+          }
+          else if (state == GameState.PAUSED)
+            state = GameState.INGAME;
+          break;
+      }
+
+      // Inputs only count while playing, acceleration is caught up with in the next update
+      if (input == Input.NONE || state != GameState.INGAME || replayPlayer != null) continue;
+      engine.step(input, 0);
+      if (inputCount < inputTimestamps.length)
+        inputTimestamps[inputCount++] = keyEvents.getTimestamp();
+    }
   }
 
   private void update() 
   {
-    grid.update();
+    if (replayPlayer != null)
+    {
+      replayPlayer.advance(UPDATE_TICKS);
+      if (engine.isGameOver() || replayPlayer.isFinished())
+        gameover();
+      return;
+    }
+
+    if (accelerated != engine.isAccelerated())
+      engine.step(accelerated ? Input.ACCELERATE : Input.DECELERATE, 0);
+    engine.step(Input.NONE, UPDATE_TICKS);
+    Metrics.PIECES_LOCKED.add(engine.getPiecesLocked() - countedPieces);
+    Metrics.LINES_CLEARED.add(engine.getClearedRows() - countedRows);
+    countedPieces = engine.getPiecesLocked();
+    countedRows = engine.getClearedRows();
 
-    hud.setTile(grid.getNextTile());
+    if (engine.getScore() > highscore) 
+    {
+      highscore = engine.getScore();
+      Database.saveHighscore(highscore);
+    }
+
+    // If after this update the game is lost, end the game
+    if (engine.isGameOver())
+      gameover();
+  }
+
+  /**
+   * Publish a snapshot of the game for rendering
+   */
+  private void publish()
+  {
+    snapshots.publish(engine, state, highscore, gameoverScore);
   }
 
   private void render()
   {
+    if (canvas != null)
+    {
+      canvas.render();
+      return;
+    }
+
     grid.render();
     hud.render();
   }
@@ -254,8 +586,22 @@ public class Game implements Runnable
     System.exit(1);
   }
 
-  public static void main(String[] args) 
+  /**
+   * Start the game
+   * @param args Nothing to play, or {@code --replay <file>} to show a replay in real time, or
+   *             {@code --replay <file> --headless} to play it back as fast as possible
+   */
+  public static void main(String[] args) throws IOException
   {
+    if (args.length >= 2 && args[0].equals("--replay"))
+    {
+      if (args.length >= 3 && args[2].equals("--headless"))
+        ReplayPlayer.main(new String[] { args[1] });
+      else
+        new Game(new ReplayReader(new File(args[1])));
+      return;
+    }
+
     new Game();
   }
 }
\ No newline at end of file
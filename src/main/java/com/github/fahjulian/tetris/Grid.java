@@ -1,189 +1,222 @@
 package com.github.fahjulian.tetris;
 
-import com.github.fahjulian.tetris.util.Clock;
-import com.github.fahjulian.tetris.util.Direction;
 import com.github.fahjulian.tetris.util.GameState;
 import com.github.fahjulian.tetris.gameobject.Tile;
-import com.github.fahjulian.tetris.gameobject.Block;
-
-import java.util.ArrayList;
+import com.github.fahjulian.tetris.metrics.Metrics;
+import com.github.fahjulian.tetris.ui.BlockAtlas;
+import com.github.fahjulian.tetris.ui.DirtyRegion;
+import com.github.fahjulian.tetris.ui.Images;
+import com.github.fahjulian.tetris.ui.Layer;
+import com.github.fahjulian.tetris.ui.RenderSnapshot;
+import com.github.fahjulian.tetris.ui.SnapshotBuffer;
+import com.github.fahjulian.tetris.ui.Viewport;
 
 import javax.swing.JLabel;
 
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Color;
-import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.AlphaComposite;
 import java.awt.Font;
+import java.awt.image.BufferedImage;
 
-public class Grid extends JLabel 
+public class Grid extends JLabel implements Layer
 {
   private static final long serialVersionUID = 7393460942206999569L;
 
+  /** The size of a block on boards that fit on the screen */
   public static final int BLOCKSIZE;
-  public static final int ROWS;
-  public static final int COLS;
-  private static final Point STARTING_POS;
-  /** The amount of rows the current tile moves down normally */
-  private static final int NORMAL_SPEED;
-  /** The amount of rows the current tile moves down when down arrow button is pressed */
-  private static final int ACCELERATED_SPEED;
+  /** The size of the board unless configured otherwise */
+  public static final int DEFAULT_ROWS;
+  public static final int DEFAULT_COLS;
 
   private final int width;
   private final int height;
   private final int padding;
-  private final Block[][] blocks;
-  private final Game game;
-  private final CollisionManager collisionManager;
-
-  private boolean accelerated;
-  private Clock movingClock;
-  private int tileRotation;
-  private Point tilePos;
-  private Tile currentTile;
-  private Tile nextTile;
-  private Direction horizontalDir;
+  private final SnapshotBuffer snapshots;
+  private final Viewport viewport;
+  private final int blockSize;
+  /** The background and grid lines, rendered once */
+  private BufferedImage background;
+  private final DirtyRegion dirty;
+  private final Rectangle clip;
+
+  // What was shown when the changes were last collected
+  private final long[] shownRowVersions;
+  private GameState shownState;
+  private int shownTopRow;
+  private int shownLeftCol;
+  private Font shownFont;
+  private Tile shownTile;
+  private int shownRotation;
+  private int shownCol;
+  private int shownRow;
 
   static 
   {
     BLOCKSIZE = 25;
-    ROWS = 20;
-    COLS = 12;
-    STARTING_POS = new Point((COLS / 2 - 2) * BLOCKSIZE + Game.PADDING, Game.PADDING);
-    NORMAL_SPEED = 1;
-    ACCELERATED_SPEED = 15;
+    DEFAULT_ROWS = 20;
+    DEFAULT_COLS = 12;
   }
 
   /**
-   * Constructs a new Tetris Grid
-   * @param width Width of the grid
-   * @param height Height of the grid
+   * Constructs a new Tetris Grid, rendering the board and current tile of a game
+   * @param snapshots The snapshots of the game to render
+   * @param viewport The part of the board to show
    * @param padding Spacing to the border of the window in all 4 directions
    */
-  public Grid(Game game, int width, int height, int padding) 
+  public Grid(SnapshotBuffer snapshots, Viewport viewport, int padding) 
   {
-    this.game = game;
-    this.width = width;
-    this.height = height;
+    this.snapshots = snapshots;
+    this.viewport = viewport;
+    this.blockSize = viewport.getBlockSize();
+    this.width = viewport.getWidth();
+    this.height = viewport.getHeight();
     this.padding = padding;
-    this.accelerated = false;
-    this.movingClock = new Clock();
-
-    this.currentTile = Tile.randomTile();
-    this.nextTile = Tile.randomTile();
-    this.tileRotation = 0;
-    this.blocks = new Block[ROWS][COLS];
-    this.tilePos = (Point) STARTING_POS.clone();
-    this.collisionManager = new CollisionManager(this);
-  }
-
-  public void reset()
-  {
-    for (int row = 0; row < ROWS; row++)
-      for (int col = 0; col < COLS; col++)
-        this.blocks[row][col] = null;
-    this.currentTile = Tile.randomTile();
-    this.nextTile = Tile.randomTile();
-    this.tileRotation = 0;
-    this.tilePos = (Point) STARTING_POS.clone();
-    this.movingClock.reset();
+    this.dirty = new DirtyRegion();
+    this.clip = new Rectangle();
+    this.shownRowVersions = new long[viewport.getRows()];
+    this.shownTopRow = -1;
+    this.shownLeftCol = -1;
   }
 
+  /**
+   * Repaint the changed parts of the grid through Swing. May only be called by the thread
+   * publishing the snapshots.
+   */
   public void render()
   {
-    repaint();
+    dirty.clear();
+    collectDirty(dirty);
+    dirty.repaint(this);
   }
 
-  public void update()
+  /**
+   * Add the changes between the last published snapshot and the one the changes were last
+   * collected for. May only be called by the thread publishing the snapshots.
+   */
+  @Override
+  public void collectDirty(DirtyRegion region)
   {
-    // If after this update the game is lost, let the Game instance know
-    if (collisionManager.hasPlayerLost())
+    RenderSnapshot snapshot = snapshots.getPublished();
+    if (snapshot == null) return;
+    Tile tile = snapshot.getCurrentTile();
+    int rotation = snapshot.getTileRotation(), col = snapshot.getTileCol(), row = snapshot.getTileRow();
+    int topRow = viewport.getTopRow(snapshot), leftCol = viewport.getLeftCol(snapshot);
+
+    // Everything changes with the overlay, its font or when the view scrolls
+    if (snapshot.getState() != shownState || topRow != shownTopRow || leftCol != shownLeftCol ||
+        HUD.getScoreFont() != shownFont)
     {
-      game.gameover();
-      return;
-    }
-
-    if (currentTile == null) return;
-
-    // Move down the current tile if enough time has passed from the last time
-    // it has been moved down.
-    int speed = accelerated ? ACCELERATED_SPEED : NORMAL_SPEED;
-    if (movingClock.peekDuration() > (1000 / speed))
-    {
-      if (collisionManager.canTileMoveDown()) tilePos.y += BLOCKSIZE;
-      else spawnNewTile();
-      movingClock.reset();
+      shownState = snapshot.getState();
+      shownFont = HUD.getScoreFont();
+      shownTopRow = topRow;
+      shownLeftCol = leftCol;
+      region.addAll();
     }
 
+    // Only the shown rows matter
+    int top = viewport.getVisibleRows(), bottom = -1;
+    for (int r = 0; r < viewport.getVisibleRows(); r++)
+      if (snapshot.getRowVersion(topRow + r) != shownRowVersions[topRow + r])
+      {
+        shownRowVersions[topRow + r] = snapshot.getRowVersion(topRow + r);
+        top = Math.min(top, r);
+        bottom = r;
+      }
+    if (top <= bottom)
+      region.add(padding, padding + top * blockSize, width + 1, (bottom - top + 1) * blockSize + 1);
 
-    // Move Tile horizontally if the right or left arrow button has been pressed.
-    if (horizontalDir != null)
+    if (tile != shownTile || rotation != shownRotation || col != shownCol || row != shownRow)
     {
-      if (collisionManager.canTileMoveHorizontically())
-      {
-        tilePos.x += (horizontalDir == Direction.RIGHT) ? BLOCKSIZE : -BLOCKSIZE;
-        horizontalDir = null;
-      } 
-      else if (collisionManager.hasTileHitBlock())
-        spawnNewTile();
+      addTile(region, shownTile, shownRotation, shownCol, shownRow);
+      addTile(region, tile, rotation, col, row);
+      shownTile = tile;
+      shownRotation = rotation;
+      shownCol = col;
+      shownRow = row;
     }
+  }
 
-    int clearedRows = 0;
-    for (int row = 0; row < ROWS; row++)
-      if (isRowComplete(row)) 
-      {
-        eraseRow(row);
-        clearedRows++;
-      }
-    game.updateScore(clearedRows);
+  private void addTile(DirtyRegion region, Tile tile, int rotation, int col, int row)
+  {
+    if (tile == null) return;
+    int minCol = tile.getMinCol(rotation), minRow = tile.getMinRow(rotation);
+    region.add(padding + (col + minCol - shownLeftCol) * blockSize, padding + (row + minRow - shownTopRow) * blockSize,
+        (tile.getMaxCol(rotation) - minCol + 1) * blockSize + 1, (tile.getMaxRow(rotation) - minRow + 1) * blockSize + 1);
   }
   
   @Override
   protected void paintComponent(Graphics g) 
   {
     super.paintComponent(g);
-    
-    if (game.getState() != GameState.INGAME)
+    paintLayer(g);
+  }
+
+  /**
+   * Paint the latest snapshot. May only be called by the thread rendering the snapshots.
+   */
+  @Override
+  public void paintLayer(Graphics g)
+  {
+    RenderSnapshot snapshot = snapshots.acquire();
+    if (snapshot == null) return;
+
+    long start = System.nanoTime();
+    paintFrame(g, snapshot);
+    Metrics.PAINT_GRID.record(System.nanoTime() - start);
+  }
+
+  private void paintFrame(Graphics g, RenderSnapshot snapshot)
+  {
+    if (snapshot.getState() != GameState.INGAME)
     {
-      renderOverlay(g);
+      renderOverlay(g, snapshot);
     }
     
-    // Background
-    g.setColor(Color.WHITE);
-    g.fillRect(padding, padding, width, height);
-    
-    // Grid lines
-    g.setColor(Color.LIGHT_GRAY);
-    for (int row = 0; row < ROWS + 1; row++)
-      g.fillRect(0 + padding, row * BLOCKSIZE + padding, width, 1);
-    for (int col = 0; col < COLS + 1; col++)
-      g.fillRect(col * BLOCKSIZE + padding, 0 + padding, 1, height);
+    // Background and grid lines
+    if (background == null)
+      background = Images.createGridBackground(viewport.getVisibleRows(), viewport.getVisibleCols(), blockSize);
+    g.drawImage(background, padding, padding, null);
     
+    BlockAtlas atlas = BlockAtlas.get(blockSize);
+    int topRow = viewport.getTopRow(snapshot), leftCol = viewport.getLeftCol(snapshot);
+
     // Current tile
+    Tile currentTile = snapshot.getCurrentTile();
     if (currentTile != null)
-    for (Block block: getCurrentTileBlocks())
-      block.render(g);
+    {
+      int rotation = snapshot.getTileRotation();
+      for (int cell = 0; cell < Tile.CELLS; cell++)
+      {
+        int row = snapshot.getTileRow() + currentTile.getCellRow(rotation, cell) - topRow;
+        int col = snapshot.getTileCol() + currentTile.getCellCol(rotation, cell) - leftCol;
+        if (row >= 0 && row < viewport.getVisibleRows() && col >= 0 && col < viewport.getVisibleCols())
+          atlas.render(g, currentTile, col * blockSize + padding, row * blockSize + padding);
+      }
+    }
       
-    // Static blocks
-    for (Block block: getBlocks())
-      block.render(g);
-  }
-
-  private void spawnNewTile()
-  {
-    for (Block block: getCurrentTileBlocks())
-      blocks[(block.getY() - padding) / BLOCKSIZE][(block.getX() - padding) / BLOCKSIZE] = block;
-
-    currentTile = nextTile;
-    nextTile = Tile.randomTile();
-    tilePos = (Point) STARTING_POS.clone();
-    tileRotation = 0;
-    movingClock.reset();
+    // Static blocks, only in the shown cells inside the clip
+    clip.setBounds(0, 0, width + 2 * padding + 1, height + 2 * padding + 1);
+    g.getClipBounds(clip);
+    int firstRow = Math.max((clip.y - padding) / blockSize, 0);
+    int lastRow = Math.min((clip.y + clip.height - padding) / blockSize, viewport.getVisibleRows() - 1);
+    int firstCol = Math.max((clip.x - padding) / blockSize, 0);
+    int lastCol = Math.min((clip.x + clip.width - padding) / blockSize, viewport.getVisibleCols() - 1);
+    for (int row = firstRow; row <= lastRow; row++)
+    {
+      if (snapshot.getRowFill(topRow + row) == 0) continue;
+      for (int col = firstCol; col <= lastCol; col++)
+      {
+        Tile tile = snapshot.getTile(topRow + row, leftCol + col);
+        if (tile != null) 
+          atlas.render(g, tile, col * blockSize + padding, row * blockSize + padding);
+      }
+    }
   }
 
-  private void renderOverlay(Graphics g)
+  private void renderOverlay(Graphics g, RenderSnapshot snapshot)
   {
     Graphics2D g2d = (Graphics2D) g;
     g2d.setColor(Color.BLACK);
@@ -191,11 +224,11 @@ public class Grid extends JLabel
     g2d.fillRect(padding, padding, width, height);
 
     g2d.setColor(Color.RED);
-    g2d.setFont(HUD.SCORE_FONT);
+    g2d.setFont(HUD.getScoreFont());
     g2d.setComposite(AlphaComposite.SrcOver);
     String msg1 = null, msg2 = null;
 
-    switch (game.getState())
+    switch (snapshot.getState())
     {
       case PAUSED:
         msg1 = "PAUSED";
@@ -206,7 +239,7 @@ public class Grid extends JLabel
         msg2 = "Press Enter to start";
         break;
       case GAMEOVER:
-        msg1 = String.format("GAME OVER! (SCORE: %d)", game.scoreOnGameover());
+        msg1 = String.format("GAME OVER! (SCORE: %d)", snapshot.getGameoverScore());
         msg2 = "Press Enter to restart";
         break;
       default: return;
@@ -219,37 +252,6 @@ public class Grid extends JLabel
     g2d.setComposite(AlphaComposite.DstAtop.derive(0.95f));
   }
 
-  public void setHorizonalDir(Direction dir) 
-  {
-    if (dir == Direction.RIGHT || dir == Direction.LEFT) horizontalDir = dir;
-  }
-
-  public void setAccelerated(boolean accelerated) 
-  {
-    this.accelerated = accelerated;
-  }
-
-  public Direction getHorizontalDir()
-  {
-    return horizontalDir;
-  }
-
-  public Tile getCurrentTile()
-  {
-    return currentTile;
-  }
-  
-  public void rotateTile()
-  {
-    if (collisionManager.canTileRotate())
-      tileRotation = tileRotation < 3 ? tileRotation + 1 : 0;
-  }
-
-  public ArrayList<Block> getCurrentTileBlocks()
-  {
-    return currentTile.toBlockArray(tileRotation, tilePos);
-  }
-
   /**
    * Get a {@code Rectangle} of the grid in the {@code Window}
    * @return A {@code Rectangle} of the grid's {@code JPanel}
@@ -259,181 +261,4 @@ public class Grid extends JLabel
   {
     return new Rectangle(padding, padding, width, height);
   }
-
-  /**
-   * Get all the current blocks in the grid
-   * @return {@code ArrayList} of all the current static blocks
-   */
-  public ArrayList<Block> getBlocks() 
-  {
-    ArrayList<Block> blocks = new ArrayList<Block>();
-    for (Block[] row: this.blocks)
-      for (Block block: row)
-        if (block != null) blocks.add(block);
-    return blocks;
-  }
-
-  public Tile getNextTile()
-  {
-    return nextTile;
-  }
-
-  public int getTileRotation()
-  {
-    return tileRotation;
-  }
-
-  public Point getTilePos()
-  {
-    return tilePos;
-  }
-
-  private boolean isRowComplete(int row)
-  {
-    for (Block block: blocks[row])
-      if (block == null)
-        return false;
-    return true;
-  }
-
-  private void eraseRow(int row)
-  {
-    // blocks[row] = new Block[COLS];
-
-    // Drop all other rows down
-    while (row > 0)
-    {
-      blocks[row] = blocks[row - 1];
-      row--;
-
-      for (Block block: blocks[row])
-        if (block != null) block.setY(block.getY() + BLOCKSIZE);
-    }
-    blocks[0] = new Block[COLS];
-  }
-}
-
-
-class CollisionManager
-{
-  public static final int HIT_WALL;
-  public static final int HIT_BLOCK;
-
-  private Grid grid;
-  private int failReason; 
-
-  static 
-  {
-    HIT_WALL = 1;
-    HIT_BLOCK = 2;
-  }
-
-  /**
-   * Constructs a new Collision manager for a tetris grid
-   */
-  public CollisionManager(Grid grid)
-  {
-    this.grid = grid; 
-  }
-
-  /**
-   * Check if the grid's current tile can move in it's current horizontal direction
-   * @return Whether or not it can move
-   */
-  public boolean canTileMoveHorizontically()
-  { 
-    if (grid.getHorizontalDir() == null || grid.getCurrentTile() == null) return false;
-
-    int velX = (grid.getHorizontalDir() == Direction.RIGHT) ? Grid.BLOCKSIZE : -Grid.BLOCKSIZE;
-    for (Block movingBlock: grid.getCurrentTileBlocks())
-    {
-      // Check if Tile would collide with any of the grids blocks
-      Rectangle movedBounds = movingBlock.getBounds();
-      movedBounds.translate(velX, 0);
-      for (Block staticBlock: grid.getBlocks())
-        if (movedBounds.intersects(staticBlock.getBounds())) 
-        {
-          failReason = HIT_BLOCK;
-          return false;
-          }
-
-      // Check if Tile would go outside of the grids bounds
-      if ((grid.getHorizontalDir() == Direction.RIGHT && movedBounds.getMaxX() > grid.getBounds().getMaxX()) ||
-        (grid.getHorizontalDir()  == Direction.LEFT && movedBounds.getMinX() < grid.getBounds().getMinX()))
-      {
-        failReason = HIT_WALL;
-        return false;
-      }
-    }
-
-    return true;
-  }
-
-  /**
-   * Check if the rotated version of the {@code #grid}'s current tile would exceed grid bounds or collide with another block
-   * @return Whether or not it is allowed for the current tile to rotate
-   */
-  public boolean canTileRotate()
-  {
-    if (grid.getCurrentTile() == null) return false;
-
-    int rotation = grid.getTileRotation() < 3 ? grid.getTileRotation() + 1 : 0;
-    ArrayList<Block> rotatedBlocks = grid.getCurrentTile().toBlockArray(rotation, grid.getTilePos());
-
-    for (Block rotatedBlock: rotatedBlocks)
-    {
-      if (rotatedBlock.getBounds().getMaxX() > grid.getBounds().getMaxX() || 
-          rotatedBlock.getBounds().getMinX() < grid.getBounds().getMinX() ||
-          rotatedBlock.getBounds().getMaxY() > grid.getBounds().getMaxY())
-            return false;
-      for (Block staticBlock: grid.getBlocks())
-        if (rotatedBlock.getPos().equals(staticBlock.getPos()))
-          return false;
-    }
-
-    return true;
-  }
-
-  /**
-   * Check if the game is lost by checking for blocks above the grid height
-   * @return Whether or not the game is lost
-   */
-  public boolean hasPlayerLost()
-  {
-    for (Block staticBlock: grid.getBlocks())
-      if (staticBlock.getBounds().getMinY() <= grid.getBounds().getMinY())
-        return true;
-      
-    return false;
-  }
-
-  /**
-   * Check if the last time the tile has failed to move horizontically it was because it would have hit another block
-   * @return Whether or not the last fail reason was another block
-   */
-  public boolean hasTileHitBlock()
-  {
-    return failReason == HIT_BLOCK;
-  }
-
-  /**
-   * Check if the grid's current tile can move down.
-   * @return Whether or not the tile can move down
-   */
-  public boolean canTileMoveDown()
-  {
-    for (Block movingBlock: grid.getCurrentTileBlocks())
-    {
-      Rectangle movedBounds = movingBlock.getBounds();
-      movedBounds.translate(0, Grid.BLOCKSIZE);
-      for (Block staticBlock: grid.getBlocks())
-        if (movedBounds.intersects(staticBlock.getBounds()))
-          return false;
-      
-      if (movedBounds.getMaxY() > grid.getBounds().getMaxY())
-        return false;
-    }
-
-    return true;
-  }
 }
@@ -1,7 +1,13 @@
 package com.github.fahjulian.tetris;
 
 import com.github.fahjulian.tetris.gameobject.Tile;
-import com.github.fahjulian.tetris.gameobject.Block;
+import com.github.fahjulian.tetris.metrics.Metrics;
+import com.github.fahjulian.tetris.ui.BlockAtlas;
+import com.github.fahjulian.tetris.ui.DirtyRegion;
+import com.github.fahjulian.tetris.ui.Images;
+import com.github.fahjulian.tetris.ui.Layer;
+import com.github.fahjulian.tetris.ui.RenderSnapshot;
+import com.github.fahjulian.tetris.ui.SnapshotBuffer;
 import com.github.fahjulian.tetris.util.FontLoader;
 
 import javax.swing.JLabel;
@@ -11,86 +17,176 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Font;
+import java.awt.image.BufferedImage;
 
-public class HUD extends JLabel 
+public class HUD extends JLabel implements Layer
 {
   private static final long serialVersionUID = 5410681278520853843L;
 
   private static final int ROWS;
   private static final int COLS;
   private static final Point TILE_POS;
-  public static final Font SCORE_FONT;
+  /** The top and the bottom of the area the score and highscore are drawn in */
+  private static final int SCORE_TOP;
+  private static final int SCORE_BOTTOM;
+  private static final String SCORE_FONT_RESOURCE;
+  /** Shown until the score font is loaded */
+  private static final Font FALLBACK_FONT;
+  private static volatile Font scoreFont;
 
   private final int width;
   private final int height;
   private final int padding;
-  private final Game game;
-
-  private Tile tile;
+  private final SnapshotBuffer snapshots;
+  /** The background and grid lines, rendered once */
+  private BufferedImage background;
+  private final DirtyRegion dirty;
+
+  // What was shown when the changes were last collected
+  private boolean shown;
+  private Tile shownTile;
+  private int shownScore;
+  private int shownHighscore;
+  private Font shownFont;
 
   static
   {
     ROWS = 4;
     COLS = 4;
     TILE_POS = new Point(Game.PADDING, Game.PADDING);
-    SCORE_FONT = FontLoader.loadTTF("src/main/resources/fonts/PlaymegamesReguler-2OOee.ttf", Font.PLAIN, 25);
+    SCORE_TOP = 170;
+    SCORE_BOTTOM = 305;
+    SCORE_FONT_RESOURCE = "/fonts/PlaymegamesReguler-2OOee.ttf";
+    FALLBACK_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 25);
+  }
+
+  /**
+   * Load the score font. Called in the background while the game starts, the HUD and the grid
+   * repaint with it as soon as it is loaded.
+   */
+  public static void loadFont()
+  {
+    Font font = FontLoader.loadTTF(SCORE_FONT_RESOURCE, Font.PLAIN, 25);
+    if (font != null) scoreFont = font;
+  }
+
+  /**
+   * Get the font of the score and the messages
+   * @return The score font, or a fallback font until it is loaded
+   */
+  public static Font getScoreFont()
+  {
+    Font font = scoreFont;
+    return font != null ? font : FALLBACK_FONT;
   }
 
   /**
    * Constructs a new HUD with the next Tetris tile (and scoreboard)
+   * @param snapshots The snapshots of the game to render
    * @param width Width of the HUD
    * @param height Height of the HUD
    * @param padding Spacing to other elements in all 4 directions
    */
-  public HUD(Game game, int width, int height, int padding) 
+  public HUD(SnapshotBuffer snapshots, int width, int height, int padding) 
   {
     this.width = width;
     this.height = height;
     this.padding = padding;
-    this.game = game;
+    this.snapshots = snapshots;
+    this.dirty = new DirtyRegion();
 
     setPreferredSize(new Dimension(width + 2 * padding + 1, height + 2 * padding + 1));
   }
 
+  /**
+   * Repaint the changed parts of the HUD through Swing. May only be called by the thread
+   * publishing the snapshots.
+   */
   public void render()
   {
-    repaint();
+    dirty.clear();
+    collectDirty(dirty);
+    dirty.repaint(this);
+  }
+
+  /**
+   * Add the changes between the last published snapshot and the one the changes were last
+   * collected for. May only be called by the thread publishing the snapshots.
+   */
+  @Override
+  public void collectDirty(DirtyRegion region)
+  {
+    RenderSnapshot snapshot = snapshots.getPublished();
+    if (snapshot == null) return;
+    Tile tile = snapshot.getNextTile();
+
+    if (!shown)
+    {
+      shown = true;
+      region.addAll();
+    }
+
+    if (tile != shownTile)
+    {
+      shownTile = tile;
+      region.add(padding, padding, width + 1, height + 1);
+    }
+
+    if (snapshot.getScore() != shownScore || snapshot.getHighscore() != shownHighscore || getScoreFont() != shownFont)
+    {
+      shownScore = snapshot.getScore();
+      shownHighscore = snapshot.getHighscore();
+      shownFont = getScoreFont();
+      region.add(0, SCORE_TOP, width + 2 * padding + 1, SCORE_BOTTOM - SCORE_TOP);
+    }
   }
 
   @Override
   protected void paintComponent(Graphics g)
   {
     super.paintComponent(g);
+    paintLayer(g);
+  }
 
-    // Background
-    g.setColor(Color.WHITE);
-    g.fillRect(padding, padding, width, height);
+  /**
+   * Paint the latest snapshot. May only be called by the thread rendering the snapshots.
+   */
+  @Override
+  public void paintLayer(Graphics g)
+  {
+    RenderSnapshot snapshot = snapshots.acquire();
+    if (snapshot == null) return;
+
+    long start = System.nanoTime();
+    paintFrame(g, snapshot);
+    Metrics.PAINT_HUD.record(System.nanoTime() - start);
+  }
 
-    // Grid lines
-    g.setColor(Color.LIGHT_GRAY);
-    for (int row = 0; row < ROWS + 1; row++)
-      g.fillRect(0 + padding, row * Grid.BLOCKSIZE + padding, width, 1);
-    for (int col = 0; col < COLS + 1; col++)
-      g.fillRect(col * Grid.BLOCKSIZE + padding, 0 + padding, 1, height);
+  private void paintFrame(Graphics g, RenderSnapshot snapshot)
+  {
+    // Background and grid lines
+    if (background == null)
+      background = Images.createGridBackground(ROWS, COLS, Grid.BLOCKSIZE);
+    g.drawImage(background, padding, padding, null);
 
     // Tile
+    Tile tile = snapshot.getNextTile();
     if (tile != null)
-      for (Block block: tile.toBlockArray(0, TILE_POS))
-        block.render(g);
+    {
+      BlockAtlas atlas = BlockAtlas.get(Grid.BLOCKSIZE);
+      for (int cell = 0; cell < Tile.CELLS; cell++)
+        atlas.render(g, tile, TILE_POS.x + tile.getCellCol(0, cell) * Grid.BLOCKSIZE, 
+            TILE_POS.y + tile.getCellRow(0, cell) * Grid.BLOCKSIZE);
+    }
 
     // Score
-    String score = String.valueOf(game.getScore());
-    String highscore = String.valueOf(game.getHighscore());
+    String score = String.valueOf(snapshot.getScore());
+    String highscore = String.valueOf(snapshot.getHighscore());
     g.setColor(Color.RED);
-    g.setFont(SCORE_FONT);
+    g.setFont(getScoreFont());
     g.drawString("SCORE:", padding, 200);
     g.drawString(score, padding, 225);
     g.drawString("HIGHSCORE:", padding, 270);
     g.drawString(highscore, padding, 295);
   }
-
-  public void setTile(Tile tile)
-  {
-    this.tile = tile;
-  }
 }
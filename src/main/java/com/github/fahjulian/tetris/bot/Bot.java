@@ -0,0 +1,267 @@
+package com.github.fahjulian.tetris.bot;
+
+import com.github.fahjulian.tetris.Grid;
+import com.github.fahjulian.tetris.engine.BitBoard;
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.engine.Input;
+import com.github.fahjulian.tetris.gameobject.Tile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays Tetris by searching every reachable placement of the current tile and, for each of them,
+ * every reachable placement of the next tile. The placements of the current tile are searched on
+ * the calling thread; the placements of the next tile are searched in parallel and abandoned once
+ * the time budget of the move is used up.
+ */
+public class Bot
+{
+  /** Score of a placement which loses the game */
+  private static final double LOST;
+
+  private final int cols;
+  private final Heuristic heuristic;
+  private final ForkJoinPool pool;
+  private final long budgetNanos;
+  /** Buffers of {@link #findMove(Engine)}, separate from the lookahead's in case a caller runs lookaheads */
+  private final ThreadLocal<SearchContext> roots;
+  private final ThreadLocal<SearchContext> contexts;
+
+  static
+  {
+    LOST = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Constructs a new bot
+   * @param rows Amount of rows of the boards to play on
+   * @param cols Amount of columns of the boards to play on
+   * @param heuristic Scores the boards a move leads to
+   * @param pool The pool to search the next tile's placements on
+   * @param budgetNanos The time after which {@link #findMove(Engine)} returns at the latest
+   */
+  public Bot(final int rows, final int cols, Heuristic heuristic, ForkJoinPool pool, long budgetNanos)
+  {
+    this.cols = cols;
+    this.heuristic = heuristic;
+    this.pool = pool;
+    this.budgetNanos = budgetNanos;
+    this.roots = new ThreadLocal<SearchContext>() {
+      @Override
+      protected SearchContext initialValue()
+      {
+        return new SearchContext(rows, cols);
+      }
+    };
+    this.contexts = new ThreadLocal<SearchContext>() {
+      @Override
+      protected SearchContext initialValue()
+      {
+        return new SearchContext(rows, cols);
+      }
+    };
+  }
+
+  /**
+   * Find the best move for the current tile of a game
+   * @param engine The game, which is not modified
+   * @return The best move, or {@code null} if the current tile cannot move at all
+   */
+  public BotMove findMove(Engine engine)
+  {
+    long deadline = System.nanoTime() + budgetNanos;
+    SearchContext context = roots.get();
+    PlacementSearch search = context.search;
+    BitBoard board = engine.getBoard().getBits();
+    Tile tile = engine.getCurrentTile();
+
+    int count = search.search(board, tile, engine.getTileRotation(), engine.getTileCol(), engine.getTileRow());
+    if (count == 0) return null;
+
+    // First ply: score every placement on its own, as the fallback if the budget runs out
+    int best = 0;
+    double[] scores = new double[count];
+    List<Callable<Double>> lookaheads = new ArrayList<Callable<Double>>(count);
+    for (int i = 0; i < count; i++)
+    {
+      int rotation = search.getRotation(i), col = search.getCol(i), row = search.getRow(i);
+      context.first.copyFrom(board);
+      context.first.place(tile, rotation, col, row);
+      int cleared = context.first.eraseFullRows();
+      scores[i] = context.first.isRowEmpty(0) ? heuristic.evaluate(context.first, cleared, context.heights) : LOST;
+      if (scores[i] > scores[best]) best = i;
+
+      lookaheads.add(new Lookahead(board, tile, rotation, col, row, engine.getNextTile(), deadline));
+    }
+
+    // Second ply: score every placement by the best placement of the next tile after it
+    boolean lookahead = false;
+    try
+    {
+      List<Future<Double>> results = pool.invokeAll(lookaheads, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      double[] lookaheadScores = new double[count];
+      int lookaheadBest = 0;
+      for (int i = 0; i < count; i++)
+      {
+        Future<Double> result = results.get(i);
+        if (!result.isDone() || result.isCancelled() || Double.isNaN(lookaheadScores[i] = result.get())) break;
+        if (lookaheadScores[i] > lookaheadScores[lookaheadBest]) lookaheadBest = i;
+        if (i == count - 1)
+        {
+          lookahead = true;
+          best = lookaheadBest;
+          scores = lookaheadScores;
+        }
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException e)
+    {
+      e.printStackTrace();
+    }
+
+    return new BotMove(search.getRotation(best), search.getCol(best), search.getRow(best),
+        search.getInputs(best), scores[best], lookahead);
+  }
+
+  /**
+   * Apply the inputs of a move to a game, without letting any time pass
+   * @param engine The game
+   * @param move The move to make
+   */
+  public static void play(Engine engine, BotMove move)
+  {
+    for (Input input: move.getInputs())
+      engine.step(input, 0);
+  }
+
+  /**
+   * Scores one placement of the current tile by the best placement of the next tile after it
+   */
+  private class Lookahead implements Callable<Double>
+  {
+    private final BitBoard board;
+    private final Tile tile;
+    private final int rotation;
+    private final int col;
+    private final int row;
+    private final Tile nextTile;
+    private final long deadline;
+
+    Lookahead(BitBoard board, Tile tile, int rotation, int col, int row, Tile nextTile, long deadline)
+    {
+      this.board = board;
+      this.tile = tile;
+      this.rotation = rotation;
+      this.col = col;
+      this.row = row;
+      this.nextTile = nextTile;
+      this.deadline = deadline;
+    }
+
+    /**
+     * @return The score of the best placement of the next tile, or {@code NaN} if the deadline passed
+     */
+    @Override
+    public Double call()
+    {
+      SearchContext context = contexts.get();
+      context.first.copyFrom(board);
+      context.first.place(tile, rotation, col, row);
+      int cleared = context.first.eraseFullRows();
+      if (!context.first.isRowEmpty(0)) return LOST;
+
+      PlacementSearch search = context.search;
+      int count = search.search(context.first, nextTile, 0, cols / 2 - 2, 0);
+      double best = LOST;
+      for (int i = 0; i < count; i++)
+      {
+        if (System.nanoTime() > deadline) return Double.NaN;
+
+        context.second.copyFrom(context.first);
+        context.second.place(nextTile, search.getRotation(i), search.getCol(i), search.getRow(i));
+        int nextCleared = context.second.eraseFullRows();
+        if (context.second.isRowEmpty(0))
+          best = Math.max(best, heuristic.evaluate(context.second, cleared + nextCleared, context.heights));
+      }
+      return best;
+    }
+  }
+
+  /**
+   * The buffers one thread needs for searching, reused for every search on that thread
+   */
+  private static class SearchContext
+  {
+    final PlacementSearch search;
+    final BitBoard first;
+    final BitBoard second;
+    final int[] heights;
+
+    SearchContext(int rows, int cols)
+    {
+      this.search = new PlacementSearch(rows, cols);
+      this.first = new BitBoard(rows, cols);
+      this.second = new BitBoard(rows, cols);
+      this.heights = new int[cols];
+    }
+  }
+
+  /**
+   * Soak test the game by letting the bot play headless games as fast as it can
+   * @param args [pieces] [threads] [budget in ms per move] [seed]
+   */
+  public static void main(String[] args)
+  {
+    int pieces = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    long budget = args.length > 2 ? Long.parseLong(args[2]) : 10;
+    long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+    int rows = Integer.getInteger("tetris.rows", Grid.DEFAULT_ROWS);
+    int cols = Integer.getInteger("tetris.cols", Grid.DEFAULT_COLS);
+
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    Bot bot = new Bot(rows, cols, Heuristic.DEFAULT, pool, TimeUnit.MILLISECONDS.toNanos(budget));
+    Engine engine = new Engine(rows, cols, seed);
+
+    int games = 1, withoutLookahead = 0;
+    long maxMoveNanos = 0;
+    long start = System.nanoTime();
+    for (int piece = 0; piece < pieces; piece++)
+    {
+      if (engine.isGameOver())
+      {
+        System.out.printf("Game %d over: score %d, lines %d, pieces %d%n", games++, engine.getScore(),
+            engine.getClearedRows(), engine.getPiecesLocked());
+        engine.reset();
+      }
+
+      long moveStart = System.nanoTime();
+      BotMove move = bot.findMove(engine);
+      maxMoveNanos = Math.max(maxMoveNanos, System.nanoTime() - moveStart);
+      if (move == null)
+      {
+        engine.step(Input.DOWN, 0);
+        continue;
+      }
+      if (!move.hasLookahead()) withoutLookahead++;
+      play(engine, move);
+    }
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%d pieces in %.2fs (%.0f pieces/s), slowest move %.2fms, %d moves without lookahead%n",
+        pieces, seconds, pieces / seconds, maxMoveNanos / 1e6, withoutLookahead);
+    System.out.printf("Current game: score %d, lines %d, pieces %d%n", engine.getScore(), engine.getClearedRows(),
+        engine.getPiecesLocked());
+    pool.shutdown();
+  }
+}
@@ -0,0 +1,69 @@
+package com.github.fahjulian.tetris.bot;
+
+import com.github.fahjulian.tetris.engine.Input;
+
+/**
+ * The move a {@code Bot} decided on for the current tile
+ */
+public class BotMove
+{
+  private final int rotation;
+  private final int col;
+  private final int row;
+  private final Input[] inputs;
+  private final double score;
+  private final boolean lookahead;
+
+  /**
+   * Constructs a new move
+   * @param rotation Rotation state the tile is locked in
+   * @param col Column the top-left corner of the tile's shape is locked in
+   * @param row Row the top-left corner of the tile's shape is locked in
+   * @param inputs The inputs leading there, ending with the one locking the tile
+   * @param score Heuristic score of the move
+   * @param lookahead Whether the score includes the best placement of the next tile
+   */
+  public BotMove(int rotation, int col, int row, Input[] inputs, double score, boolean lookahead)
+  {
+    this.rotation = rotation;
+    this.col = col;
+    this.row = row;
+    this.inputs = inputs;
+    this.score = score;
+    this.lookahead = lookahead;
+  }
+
+  public int getRotation()
+  {
+    return rotation;
+  }
+
+  public int getCol()
+  {
+    return col;
+  }
+
+  public int getRow()
+  {
+    return row;
+  }
+
+  public Input[] getInputs()
+  {
+    return inputs;
+  }
+
+  public double getScore()
+  {
+    return score;
+  }
+
+  /**
+   * Check if the search of the next tile's placements finished within the time budget
+   * @return Whether or not the score includes the next tile
+   */
+  public boolean hasLookahead()
+  {
+    return lookahead;
+  }
+}
@@ -0,0 +1,111 @@
+package com.github.fahjulian.tetris.bot;
+
+import com.github.fahjulian.tetris.engine.BitBoard;
+import com.github.fahjulian.tetris.engine.BoardStatistics;
+
+/**
+ * Scores a board as the weighted sum of its aggregate column height, holes, bumpiness and the rows
+ * cleared to get there. Higher scores are better.
+ */
+public class Heuristic
+{
+  /** Weights found to play well on a standard board by Yiyuan Lee's genetic search */
+  public static final Heuristic DEFAULT;
+
+  private final double heightWeight;
+  private final double holeWeight;
+  private final double bumpinessWeight;
+  private final double linesWeight;
+
+  static
+  {
+    DEFAULT = new Heuristic(-0.510066, -0.35663, -0.184483, 0.760666);
+  }
+
+  /**
+   * Constructs a new heuristic
+   * @param heightWeight Weight of the sum of all column heights
+   * @param holeWeight Weight of the amount of empty cells below the top of their column
+   * @param bumpinessWeight Weight of the sum of the height differences of neighbouring columns
+   * @param linesWeight Weight of the amount of cleared rows
+   */
+  public Heuristic(double heightWeight, double holeWeight, double bumpinessWeight, double linesWeight)
+  {
+    this.heightWeight = heightWeight;
+    this.holeWeight = holeWeight;
+    this.bumpinessWeight = bumpinessWeight;
+    this.linesWeight = linesWeight;
+  }
+
+  /**
+   * Score a board
+   * @param board The board to score
+   * @param clearedRows The amount of rows cleared to reach the board
+   * @param heights Scratch array of at least {@code board.getCols()} entries
+   * @return The score of the board
+   */
+  public double evaluate(BitBoard board, int clearedRows, int[] heights)
+  {
+    int rows = board.getRows();
+    int cols = board.getCols();
+    for (int col = 0; col < cols; col++)
+      heights[col] = 0;
+
+    // Walk down the rows, remembering which columns already have a block above
+    int holes = 0;
+    for (int word = 0; word < board.getRowMaskWords(); word++)
+    {
+      long covered = 0;
+      for (int row = 0; row < rows; row++)
+      {
+        long mask = board.getRowMask(row, word);
+        holes += Long.bitCount(covered & ~mask);
+        for (long tops = mask & ~covered; tops != 0; tops &= tops - 1)
+          heights[word * Long.SIZE + Long.numberOfTrailingZeros(tops)] = rows - row;
+        covered |= mask;
+      }
+    }
+
+    int aggregateHeight = 0;
+    int bumpiness = 0;
+    for (int col = 0; col < cols; col++)
+    {
+      aggregateHeight += heights[col];
+      if (col > 0) bumpiness += Math.abs(heights[col] - heights[col - 1]);
+    }
+
+    return heightWeight * aggregateHeight + holeWeight * holes + bumpinessWeight * bumpiness + linesWeight * clearedRows;
+  }
+
+  /**
+   * Score a board from its statistics, without scanning it
+   * @param statistics The statistics of the board to score, see {@code Board#getStatistics()}
+   * @param clearedRows The amount of rows cleared to reach the board
+   * @return The score of the board
+   */
+  public double evaluate(BoardStatistics statistics, int clearedRows)
+  {
+    return heightWeight * statistics.getAggregateHeight() + holeWeight * statistics.getHoles() +
+        bumpinessWeight * statistics.getBumpiness() + linesWeight * clearedRows;
+  }
+
+  public double getHeightWeight()
+  {
+    return heightWeight;
+  }
+
+  public double getHoleWeight()
+  {
+    return holeWeight;
+  }
+
+  public double getBumpinessWeight()
+  {
+    return bumpinessWeight;
+  }
+
+  public double getLinesWeight()
+  {
+    return linesWeight;
+  }
+}
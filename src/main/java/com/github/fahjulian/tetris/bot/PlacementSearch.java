@@ -0,0 +1,157 @@
+package com.github.fahjulian.tetris.bot;
+
+import com.github.fahjulian.tetris.engine.BitBoard;
+import com.github.fahjulian.tetris.engine.Input;
+import com.github.fahjulian.tetris.gameobject.Tile;
+
+/**
+ * Finds every position a tile can be locked in from where it is now, by a breadth first search
+ * over the moves left, right, rotate and down. Also finds tucks and spins below overhangs. Reuses
+ * its buffers, so a search does not create any objects, but it is not thread safe.
+ */
+public class PlacementSearch
+{
+  private static final Input[] MOVES;
+
+  private final int rows;
+  private final int cols;
+  /** The amount of columns the top-left corner of a tile can be in, from -3 to {@code cols} */
+  private final int colSpan;
+  private final int[] queue;
+  private final int[] parent;
+  private final byte[] parentMove;
+  /** The search a state was last visited in, so the buffers never have to be cleared */
+  private final int[] visited;
+  private final int[] placements;
+
+  private int generation;
+  private int placementCount;
+
+  static
+  {
+    MOVES = new Input[] { Input.LEFT, Input.RIGHT, Input.ROTATE, Input.DOWN };
+  }
+
+  /**
+   * Constructs a new search for boards of a given size
+   * @param rows Amount of rows of the boards
+   * @param cols Amount of columns of the boards
+   */
+  public PlacementSearch(int rows, int cols)
+  {
+    this.rows = rows;
+    this.cols = cols;
+    this.colSpan = cols + 4;
+    int states = 4 * colSpan * rows;
+    this.queue = new int[states];
+    this.parent = new int[states];
+    this.parentMove = new byte[states];
+    this.visited = new int[states];
+    this.placements = new int[states];
+  }
+
+  /**
+   * Find all positions a tile can be locked in
+   * @param board The board to search on
+   * @param tile The tile to place
+   * @param rotation Current rotation state of the tile
+   * @param col Current column of the top-left corner of the tile's shape
+   * @param row Current row of the top-left corner of the tile's shape
+   * @return The amount of placements found, which can then be read with the getters
+   */
+  public int search(BitBoard board, Tile tile, int rotation, int col, int row)
+  {
+    generation++;
+    placementCount = 0;
+    if (board.collides(tile, rotation, col, row)) return 0;
+
+    int start = encode(rotation, col, row);
+    int head = 0, tail = 0;
+    queue[tail++] = start;
+    visited[start] = generation;
+    parent[start] = -1;
+
+    while (head < tail)
+    {
+      int state = queue[head++];
+      int r = getRotationOf(state), c = getColOf(state), y = getRowOf(state);
+
+      if (board.collides(tile, r, c, y + 1))
+        placements[placementCount++] = state;
+
+      for (int i = 0; i < MOVES.length; i++)
+      {
+        int nr = r, nc = c, ny = y;
+        switch (MOVES[i])
+        {
+          case LEFT: nc--; break;
+          case RIGHT: nc++; break;
+          case ROTATE: nr = r < 3 ? r + 1 : 0; break;
+          default: ny++; break;
+        }
+        if (nc < -3 || nc > cols || ny >= rows || board.collides(tile, nr, nc, ny)) continue;
+
+        int next = encode(nr, nc, ny);
+        if (visited[next] == generation) continue;
+        visited[next] = generation;
+        parent[next] = state;
+        parentMove[next] = (byte) i;
+        queue[tail++] = next;
+      }
+    }
+    return placementCount;
+  }
+
+  public int getRotation(int placement)
+  {
+    return getRotationOf(placements[placement]);
+  }
+
+  public int getCol(int placement)
+  {
+    return getColOf(placements[placement]);
+  }
+
+  public int getRow(int placement)
+  {
+    return getRowOf(placements[placement]);
+  }
+
+  /**
+   * Get the shortest sequence of inputs leading to a placement of the last search
+   * @param placement Index of the placement
+   * @return The inputs, ending with the {@link Input#DOWN} locking the tile
+   */
+  public Input[] getInputs(int placement)
+  {
+    int length = 1;
+    for (int state = placements[placement]; parent[state] != -1; state = parent[state])
+      length++;
+
+    Input[] inputs = new Input[length];
+    inputs[--length] = Input.DOWN;
+    for (int state = placements[placement]; parent[state] != -1; state = parent[state])
+      inputs[--length] = MOVES[parentMove[state]];
+    return inputs;
+  }
+
+  private int encode(int rotation, int col, int row)
+  {
+    return (rotation * colSpan + col + 3) * rows + row;
+  }
+
+  private int getRotationOf(int state)
+  {
+    return state / rows / colSpan;
+  }
+
+  private int getColOf(int state)
+  {
+    return state / rows % colSpan - 3;
+  }
+
+  private int getRowOf(int state)
+  {
+    return state % rows;
+  }
+}
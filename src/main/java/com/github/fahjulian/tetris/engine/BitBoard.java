@@ -0,0 +1,289 @@
+package com.github.fahjulian.tetris.engine;
+
+import com.github.fahjulian.tetris.gameobject.Tile;
+
+/**
+ * Bitboard of the static blocks on a {@code Board}. Every row is a mask of as many {@code long}
+ * words as needed for its board columns surrounded by wall bits, so testing a tile against the
+ * walls and the blocks is one shift and one AND per tile row, two if the tile spans two words.
+ * The rows are kept in a circular buffer starting at {@link #base}, so erasing a row only moves
+ * the rows on its shorter side.
+ */
+public class BitBoard
+{
+  public static final int NO_HIT;
+  public static final int HIT_WALL;
+  public static final int HIT_BLOCK;
+  /** The amount of wall bits left of column 0. A tile can stick out of the grid at most 3 columns */
+  private static final int WALL_WIDTH;
+
+  private final int rows;
+  private final int cols;
+  /** The amount of words of every row mask */
+  private final int words;
+  /** The row masks one word after another, row {@code n} starting at {@code (base + n) % rows * words} */
+  private final long[] masks;
+  private int base;
+  /** Mask of a row with every column occupied */
+  private final long[] fullRow;
+  /** Mask of all the bits outside of the grid */
+  private final long[] walls;
+
+  static
+  {
+    NO_HIT = 0;
+    HIT_WALL = 1;
+    HIT_BLOCK = 2;
+    WALL_WIDTH = 3;
+  }
+
+  /**
+   * Constructs a new, empty bitboard
+   * @param rows Amount of rows of the grid
+   * @param cols Amount of columns of the grid
+   */
+  public BitBoard(int rows, int cols)
+  {
+    if (rows < 1 || cols < 1) throw new IllegalArgumentException("Rows and columns must be at least 1");
+    this.rows = rows;
+    this.cols = cols;
+    // Leaves room for the walls on both sides and a tile sticking out of the right wall
+    this.words = (cols + 2 * WALL_WIDTH) / Long.SIZE + 1;
+    this.masks = new long[rows * words];
+    this.fullRow = new long[words];
+    this.walls = new long[words];
+    for (int col = 0; col < cols; col++)
+      fullRow[(col + WALL_WIDTH) / Long.SIZE] |= 1L << (col + WALL_WIDTH);
+    for (int word = 0; word < words; word++)
+      walls[word] = ~fullRow[word];
+  }
+
+  /**
+   * Check if a tile at the given cell would overlap a block, a wall or the floor
+   * @param tile The tile to check
+   * @param rotation The rotation state of the tile (between 0 and 3)
+   * @param col Column of the top-left corner of the tile's 4x4 shape
+   * @param row Row of the top-left corner of the tile's 4x4 shape
+   * @return Whether or not the tile collides
+   */
+  public boolean collides(Tile tile, int rotation, int col, int row)
+  {
+    return hitTest(tile, rotation, col, row) != NO_HIT;
+  }
+
+  /**
+   * Find out what a tile at the given cell would hit first, scanning its cells row by row from the
+   * top-left. The floor counts as a wall, everything above the grid counts as free space.
+   * @param tile The tile to check
+   * @param rotation The rotation state of the tile (between 0 and 3)
+   * @param col Column of the top-left corner of the tile's 4x4 shape
+   * @param row Row of the top-left corner of the tile's 4x4 shape
+   * @return {@link #NO_HIT}, {@link #HIT_WALL} or {@link #HIT_BLOCK}
+   */
+  public int hitTest(Tile tile, int rotation, int col, int row)
+  {
+    if (col < -WALL_WIDTH || col > cols) return HIT_WALL;
+
+    int shift = col + WALL_WIDTH;
+    int word = shift / Long.SIZE;
+    for (int r = 0; r < 4; r++)
+    {
+      int shape = tile.getRowMask(rotation, r);
+      int y = row + r;
+      if (shape == 0 || y < 0) continue;
+      if (y >= rows) return HIT_WALL;
+
+      int i = index(y) * words + word;
+      int hit = hitTest((long) shape << shift, masks[i], walls[word]);
+      // The shape continues in the next word if it starts in the last 3 bits of this one
+      if (hit == NO_HIT && (shift & 63) > 60)
+        hit = hitTest((long) shape >>> (Long.SIZE - (shift & 63)), masks[i + 1], walls[word + 1]);
+      if (hit != NO_HIT) return hit;
+    }
+    return NO_HIT;
+  }
+
+  private static int hitTest(long shape, long mask, long walls)
+  {
+    long hits = shape & (mask | walls);
+    if (hits == 0) return NO_HIT;
+    return (Long.lowestOneBit(hits) & mask) != 0 ? HIT_BLOCK : HIT_WALL;
+  }
+
+  /**
+   * Mark the cells of a tile as occupied. Cells outside of the grid are ignored.
+   * @param tile The tile to place
+   * @param rotation The rotation state of the tile (between 0 and 3)
+   * @param col Column of the top-left corner of the tile's 4x4 shape
+   * @param row Row of the top-left corner of the tile's 4x4 shape
+   */
+  public void place(Tile tile, int rotation, int col, int row)
+  {
+    if (col < -WALL_WIDTH || col > cols) return;
+
+    int shift = col + WALL_WIDTH;
+    int word = shift / Long.SIZE;
+    for (int r = 0; r < 4; r++)
+    {
+      int y = row + r;
+      if (y < 0 || y >= rows) continue;
+
+      int shape = tile.getRowMask(rotation, r);
+      int i = index(y) * words + word;
+      masks[i] |= ((long) shape << shift) & fullRow[word];
+      if ((shift & 63) > 60)
+        masks[i + 1] |= ((long) shape >>> (Long.SIZE - (shift & 63))) & fullRow[word + 1];
+    }
+  }
+
+  public boolean isRowFull(int row)
+  {
+    int start = index(row) * words;
+    for (int word = 0; word < words; word++)
+      if (masks[start + word] != fullRow[word]) return false;
+    return true;
+  }
+
+  public boolean isRowEmpty(int row)
+  {
+    int start = index(row) * words;
+    for (int word = 0; word < words; word++)
+      if (masks[start + word] != 0) return false;
+    return true;
+  }
+
+  public boolean isOccupied(int row, int col)
+  {
+    int bit = col + WALL_WIDTH;
+    return (masks[index(row) * words + bit / Long.SIZE] & (1L << bit)) != 0;
+  }
+
+  /**
+   * Mark a single cell as occupied or free
+   * @param row Row of the cell
+   * @param col Column of the cell
+   * @param occupied Whether or not the cell is occupied
+   */
+  public void set(int row, int col, boolean occupied)
+  {
+    int bit = col + WALL_WIDTH;
+    int i = index(row) * words + bit / Long.SIZE;
+    if (occupied) masks[i] |= 1L << bit;
+    else masks[i] &= ~(1L << bit);
+  }
+
+  /**
+   * Remove a row and drop all the rows above it down by one. Takes time in the amount of rows
+   * above or below the row, whichever is smaller.
+   * @param row The row to remove
+   */
+  public void eraseRow(int row)
+  {
+    if (row < rows - 1 - row)
+    {
+      for (int r = row; r > 0; r--)
+        System.arraycopy(masks, index(r - 1) * words, masks, index(r) * words, words);
+    }
+    else
+    {
+      // Move the rows below up instead and rotate the buffer, the old bottom row becomes the top
+      for (int r = row; r < rows - 1; r++)
+        System.arraycopy(masks, index(r + 1) * words, masks, index(r) * words, words);
+      base = base == 0 ? rows - 1 : base - 1;
+    }
+    int top = index(0) * words;
+    for (int word = 0; word < words; word++)
+      masks[top + word] = 0;
+  }
+
+  /**
+   * Remove the top row and move all other rows up by one, leaving an empty bottom row. Takes
+   * constant time in the amount of rows.
+   */
+  public void shiftUp()
+  {
+    int top = index(0) * words;
+    for (int word = 0; word < words; word++)
+      masks[top + word] = 0;
+    // The emptied top row becomes the bottom row
+    base = base == rows - 1 ? 0 : base + 1;
+  }
+
+  /**
+   * Remove all full rows
+   * @return The amount of removed rows
+   */
+  public int eraseFullRows()
+  {
+    int erased = 0;
+    for (int row = 0; row < rows; row++)
+      if (isRowFull(row))
+      {
+        eraseRow(row);
+        erased++;
+      }
+    return erased;
+  }
+
+  /**
+   * Get the occupied cells of 64 columns of a row
+   * @param row The row
+   * @param word Which 64 columns, 0 for the columns from 0 to 63, see {@link #getRowMaskWords()}
+   * @return Bitmask with bit {@code n} set if column {@code 64 * word + n} is occupied
+   */
+  public long getRowMask(int row, int word)
+  {
+    int i = index(row) * words + word;
+    long mask = masks[i] >>> WALL_WIDTH;
+    if (word + 1 < words) mask |= masks[i + 1] << (Long.SIZE - WALL_WIDTH);
+    return mask;
+  }
+
+  /**
+   * Get the amount of words needed to get all columns of a row with {@link #getRowMask(int, int)}
+   * @return The amount of words, 1 for grids of up to 64 columns
+   */
+  public int getRowMaskWords()
+  {
+    return (cols + Long.SIZE - 1) / Long.SIZE;
+  }
+
+  /**
+   * Make this board a copy of another board of the same size
+   * @param other The board to copy
+   */
+  public void copyFrom(BitBoard other)
+  {
+    if (other.rows != rows || other.cols != cols) throw new IllegalArgumentException("Boards must have the same size");
+    System.arraycopy(other.masks, 0, masks, 0, masks.length);
+    base = other.base;
+  }
+
+  public void clear()
+  {
+    for (int i = 0; i < masks.length; i++)
+      masks[i] = 0;
+    base = 0;
+  }
+
+  /**
+   * Get the index of a row in the circular buffer
+   * @param row The row, between 0 and {@link #rows}
+   * @return The index into {@link #masks}
+   */
+  private int index(int row)
+  {
+    int index = base + row;
+    return index < rows ? index : index - rows;
+  }
+
+  public int getRows()
+  {
+    return rows;
+  }
+
+  public int getCols()
+  {
+    return cols;
+  }
+}
@@ -0,0 +1,471 @@
+package com.github.fahjulian.tetris.engine;
+
+import com.github.fahjulian.tetris.gameobject.Tile;
+
+/**
+ * The static blocks of a game, addressed in cells. Keeps the {@code Tile} every block came from
+ * for rendering and a {@code BitBoard} of the same blocks for collision checks. Like the bitboard,
+ * the rows of tiles are kept in a circular buffer starting at {@link #base}. Maintains the
+ * {@code BoardStatistics} of the blocks as they are placed and erased.
+ */
+public class Board
+{
+  /**
+   * Gets notified of every change of a board, e.g. to send the changes to spectators. Called
+   * after the change was made.
+   */
+  public static interface ChangeListener
+  {
+    /**
+     * @see Board#place(Tile, int, int, int)
+     */
+    public void onPlace(Tile tile, int rotation, int col, int row);
+
+    /**
+     * @see Board#setTile(int, int, Tile)
+     */
+    public void onSetTile(int row, int col, Tile tile);
+
+    /**
+     * @see Board#eraseRow(int)
+     */
+    public void onEraseRow(int row);
+
+    /**
+     * @see Board#addRow(Tile, int)
+     */
+    public void onAddRow(Tile tile, int gap);
+
+    /**
+     * @see Board#clear()
+     */
+    public void onClear();
+  }
+
+  private final int rows;
+  private final int cols;
+  /** The rows of tiles, row {@code n} at index {@code (base + n) % rows} */
+  private final Tile[][] cells;
+  private int base;
+  private final BitBoard bits;
+  /** The amount of blocks in every row, indexed like {@link #cells} */
+  private final int[] rowFills;
+  /** The height of every column, from the bottom of the board to the top of its highest block */
+  private final int[] heights;
+  /** The amount of blocks in every column */
+  private final int[] columnBlocks;
+  private int blocks;
+  private int aggregateHeight;
+  private int bumpiness;
+  private int maxHeight;
+  private final BoardStatistics statistics;
+  /** The range of rows changed since the damage was last cleared, empty if top > bottom */
+  private int damageTop;
+  private int damageBottom;
+  private ChangeListener listener;
+
+  /**
+   * Constructs a new, empty board
+   * @param rows Amount of rows
+   * @param cols Amount of columns
+   */
+  public Board(int rows, int cols)
+  {
+    this.rows = rows;
+    this.cols = cols;
+    this.cells = new Tile[rows][cols];
+    this.bits = new BitBoard(rows, cols);
+    this.rowFills = new int[rows];
+    this.heights = new int[cols];
+    this.columnBlocks = new int[cols];
+    this.statistics = new Statistics();
+    damage(0, rows - 1);
+  }
+
+  /**
+   * Place a tile on the board. Cells outside of the board are ignored.
+   * @param tile The tile to place
+   * @param rotation The rotation state of the tile (between 0 and 3)
+   * @param col Column of the top-left corner of the tile's 4x4 shape
+   * @param row Row of the top-left corner of the tile's 4x4 shape
+   */
+  public void place(Tile tile, int rotation, int col, int row)
+  {
+    for (int cell = 0; cell < Tile.CELLS; cell++)
+    {
+      int y = row + tile.getCellRow(rotation, cell);
+      int x = col + tile.getCellCol(rotation, cell);
+      if (y >= 0 && y < rows && x >= 0 && x < cols) setCell(y, x, tile);
+    }
+    bits.place(tile, rotation, col, row);
+    damage(Math.max(row + tile.getMinRow(rotation), 0), Math.min(row + tile.getMaxRow(rotation), rows - 1));
+    if (listener != null) listener.onPlace(tile, rotation, col, row);
+  }
+
+  /**
+   * Set a single cell of the board
+   * @param row Row of the cell
+   * @param col Column of the cell
+   * @param tile The tile the block came from, or {@code null} to empty the cell
+   */
+  public void setTile(int row, int col, Tile tile)
+  {
+    bits.set(row, col, tile != null);
+    setCell(row, col, tile);
+    damage(row, row);
+    if (listener != null) listener.onSetTile(row, col, tile);
+  }
+
+  /**
+   * Set a cell and update the statistics, without touching {@link #bits}
+   */
+  private void setCell(int row, int col, Tile tile)
+  {
+    Tile[] cellRow = cells[index(row)];
+    boolean wasOccupied = cellRow[col] != null;
+    cellRow[col] = tile;
+    if (wasOccupied == (tile != null)) return;
+
+    int change = tile != null ? 1 : -1;
+    rowFills[index(row)] += change;
+    columnBlocks[col] += change;
+    blocks += change;
+
+    if (tile != null && rows - row > heights[col])
+      setHeight(col, rows - row);
+    else if (tile == null && rows - row == heights[col])
+      setHeight(col, findHeight(col, row + 1));
+  }
+
+  /**
+   * Find the height of a column by looking for its highest block
+   * @param col The column
+   * @param top The row to start looking from, all rows above must be empty
+   * @return The height of the column
+   */
+  private int findHeight(int col, int top)
+  {
+    for (int row = top; row < rows; row++)
+      if (bits.isOccupied(row, col)) return rows - row;
+    return 0;
+  }
+
+  private void setHeight(int col, int height)
+  {
+    int previous = heights[col];
+    heights[col] = height;
+    aggregateHeight += height - previous;
+    if (col > 0)
+      bumpiness += Math.abs(height - heights[col - 1]) - Math.abs(previous - heights[col - 1]);
+    if (col < cols - 1)
+      bumpiness += Math.abs(height - heights[col + 1]) - Math.abs(previous - heights[col + 1]);
+
+    if (height > maxHeight)
+    {
+      maxHeight = height;
+    }
+    else if (previous == maxHeight && height < previous)
+    {
+      maxHeight = 0;
+      for (int c = 0; c < cols; c++)
+        maxHeight = Math.max(maxHeight, heights[c]);
+    }
+  }
+
+  /**
+   * Remove a row and drop all the rows above it down by one. Takes time in the amount of rows
+   * above or below the row, whichever is smaller.
+   * @param row The row to remove
+   */
+  public void eraseRow(int row)
+  {
+    erase(row);
+    if (listener != null) listener.onEraseRow(row);
+  }
+
+  private void erase(int row)
+  {
+    Tile[] erased = cells[index(row)];
+    for (int col = 0; col < cols; col++)
+    {
+      if (erased[col] == null) continue;
+      erased[col] = null;
+      columnBlocks[col]--;
+      blocks--;
+    }
+
+    if (row < rows - 1 - row)
+    {
+      for (int r = row; r > 0; r--)
+      {
+        cells[index(r)] = cells[index(r - 1)];
+        rowFills[index(r)] = rowFills[index(r - 1)];
+      }
+      cells[index(0)] = erased;
+    }
+    else
+    {
+      // Move the rows below up instead and rotate the buffer, the old bottom row becomes the top
+      for (int r = row; r < rows - 1; r++)
+      {
+        cells[index(r)] = cells[index(r + 1)];
+        rowFills[index(r)] = rowFills[index(r + 1)];
+      }
+      cells[index(rows - 1)] = erased;
+      base = base == 0 ? rows - 1 : base - 1;
+    }
+    rowFills[index(0)] = 0;
+    bits.eraseRow(row);
+
+    // Columns reaching above the row drop by one, columns topped by the row drop to their next block
+    aggregateHeight = 0;
+    bumpiness = 0;
+    maxHeight = 0;
+    for (int col = 0; col < cols; col++)
+    {
+      int top = rows - heights[col];
+      if (top < row) heights[col]--;
+      else if (top == row) heights[col] = findHeight(col, row + 1);
+
+      aggregateHeight += heights[col];
+      maxHeight = Math.max(maxHeight, heights[col]);
+      if (col > 0) bumpiness += Math.abs(heights[col] - heights[col - 1]);
+    }
+    damage(0, row);
+  }
+
+  /**
+   * Push a row of blocks in from the bottom, moving all rows up by one, e.g. garbage sent by an
+   * opponent. Blocks in the top row are pushed off the board.
+   * @param tile The tile the blocks are drawn as
+   * @param gap The column left empty
+   */
+  public void addRow(Tile tile, int gap)
+  {
+    // Empty the top row, which then becomes the bottom row
+    erase(0);
+    base = base == rows - 1 ? 0 : base + 1;
+    bits.shiftUp();
+
+    // Every column with blocks grows by one, as does bumpiness between columns of different heights
+    aggregateHeight = 0;
+    bumpiness = 0;
+    maxHeight = 0;
+    for (int col = 0; col < cols; col++)
+    {
+      if (heights[col] > 0) heights[col]++;
+      aggregateHeight += heights[col];
+      maxHeight = Math.max(maxHeight, heights[col]);
+      if (col > 0) bumpiness += Math.abs(heights[col] - heights[col - 1]);
+    }
+
+    for (int col = 0; col < cols; col++)
+    {
+      if (col == gap) continue;
+      bits.set(rows - 1, col, true);
+      setCell(rows - 1, col, tile);
+    }
+    damage(0, rows - 1);
+    if (listener != null) listener.onAddRow(tile, gap);
+  }
+
+  public void clear()
+  {
+    for (int row = 0; row < rows; row++)
+      for (int col = 0; col < cols; col++)
+        cells[row][col] = null;
+    for (int row = 0; row < rows; row++)
+      rowFills[row] = 0;
+    for (int col = 0; col < cols; col++)
+    {
+      heights[col] = 0;
+      columnBlocks[col] = 0;
+    }
+    blocks = 0;
+    aggregateHeight = 0;
+    bumpiness = 0;
+    maxHeight = 0;
+    base = 0;
+    bits.clear();
+    damage(0, rows - 1);
+    if (listener != null) listener.onClear();
+  }
+
+  private void damage(int top, int bottom)
+  {
+    damageTop = Math.min(damageTop, top);
+    damageBottom = Math.max(damageBottom, bottom);
+  }
+
+  /**
+   * Get the topmost row changed since {@link #clearDamage()}, e.g. to repaint only changed rows
+   * @return The row, greater than {@link #getDamageBottom()} if no row changed
+   */
+  public int getDamageTop()
+  {
+    return damageTop;
+  }
+
+  /**
+   * Get the bottommost row changed since {@link #clearDamage()}
+   * @return The row, less than {@link #getDamageTop()} if no row changed
+   */
+  public int getDamageBottom()
+  {
+    return damageBottom;
+  }
+
+  /**
+   * Forget which rows changed
+   */
+  public void clearDamage()
+  {
+    damageTop = rows;
+    damageBottom = -1;
+  }
+
+  public boolean collides(Tile tile, int rotation, int col, int row)
+  {
+    return bits.collides(tile, rotation, col, row);
+  }
+
+  /**
+   * @see BitBoard#hitTest(Tile, int, int, int)
+   */
+  public int hitTest(Tile tile, int rotation, int col, int row)
+  {
+    return bits.hitTest(tile, rotation, col, row);
+  }
+
+  public boolean isRowFull(int row)
+  {
+    return rowFills[index(row)] == cols;
+  }
+
+  public boolean isRowEmpty(int row)
+  {
+    return rowFills[index(row)] == 0;
+  }
+
+  public boolean isOccupied(int row, int col)
+  {
+    return bits.isOccupied(row, col);
+  }
+
+  /**
+   * Get the tile a block on the board came from
+   * @param row Row of the cell
+   * @param col Column of the cell
+   * @return The {@code Tile}, or {@code null} if the cell is empty
+   */
+  public Tile getTile(int row, int col)
+  {
+    return cells[index(row)][col];
+  }
+
+  /**
+   * Get the index of a row in the circular buffer
+   * @param row The row, between 0 and {@link #rows}
+   * @return The index into {@link #cells}
+   */
+  private int index(int row)
+  {
+    int index = base + row;
+    return index < rows ? index : index - rows;
+  }
+
+  /**
+   * Set the listener notified of every change
+   * @param listener The listener, or {@code null} to remove it
+   */
+  public void setChangeListener(ChangeListener listener)
+  {
+    this.listener = listener;
+  }
+
+  /**
+   * Get the bitboard of the blocks, e.g. to search moves on a copy of it
+   * @return The board's {@code BitBoard}, which must not be modified
+   */
+  public BitBoard getBits()
+  {
+    return bits;
+  }
+
+  /**
+   * Get the statistics of the blocks, which are kept up to date as the board changes
+   * @return A read-only view of the board's statistics
+   */
+  public BoardStatistics getStatistics()
+  {
+    return statistics;
+  }
+
+  public int getRows()
+  {
+    return rows;
+  }
+
+  public int getCols()
+  {
+    return cols;
+  }
+
+  private class Statistics implements BoardStatistics
+  {
+    @Override
+    public int getRows()
+    {
+      return rows;
+    }
+
+    @Override
+    public int getCols()
+    {
+      return cols;
+    }
+
+    @Override
+    public int getRowFill(int row)
+    {
+      return rowFills[index(row)];
+    }
+
+    @Override
+    public int getColumnHeight(int col)
+    {
+      return heights[col];
+    }
+
+    @Override
+    public int getMaxHeight()
+    {
+      return maxHeight;
+    }
+
+    @Override
+    public int getAggregateHeight()
+    {
+      return aggregateHeight;
+    }
+
+    @Override
+    public int getHoles()
+    {
+      // Every cell below the top of a column is either a block or a hole
+      return aggregateHeight - blocks;
+    }
+
+    @Override
+    public int getBumpiness()
+    {
+      return bumpiness;
+    }
+
+    @Override
+    public int getBlocks()
+    {
+      return blocks;
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.github.fahjulian.tetris.engine;
+
+/**
+ * Read-only view of statistics about the blocks on a {@code Board}. The board keeps them up to
+ * date whenever blocks are placed or rows are erased, so reading them never scans the board.
+ */
+public interface BoardStatistics
+{
+  public int getRows();
+
+  public int getCols();
+
+  /**
+   * Get the amount of blocks in a row
+   * @param row The row
+   * @return The amount of blocks, {@link #getCols()} if the row is full
+   */
+  public int getRowFill(int row);
+
+  /**
+   * Get the height of a column, from the bottom of the board to the top of its highest block
+   * @param col The column
+   * @return The height in rows, 0 if the column is empty
+   */
+  public int getColumnHeight(int col);
+
+  /**
+   * Get the height of the highest column
+   * @return The height in rows, {@link #getRows()} if there is a block in the top row
+   */
+  public int getMaxHeight();
+
+  /**
+   * @return The sum of all column heights
+   */
+  public int getAggregateHeight();
+
+  /**
+   * @return The amount of empty cells below the top of their column
+   */
+  public int getHoles();
+
+  /**
+   * @return The sum of the height differences of neighbouring columns
+   */
+  public int getBumpiness();
+
+  /**
+   * @return The amount of blocks on the board
+   */
+  public int getBlocks();
+}
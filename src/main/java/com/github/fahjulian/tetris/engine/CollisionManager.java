@@ -0,0 +1,84 @@
+package com.github.fahjulian.tetris.engine;
+
+/**
+ * Checks the moves of an engine's current tile against its board
+ */
+class CollisionManager
+{
+  public static final int HIT_WALL;
+  public static final int HIT_BLOCK;
+
+  private Engine engine;
+  private int failReason;
+
+  static
+  {
+    HIT_WALL = BitBoard.HIT_WALL;
+    HIT_BLOCK = BitBoard.HIT_BLOCK;
+  }
+
+  /**
+   * Constructs a new Collision manager for a game
+   */
+  public CollisionManager(Engine engine)
+  {
+    this.engine = engine;
+  }
+
+  /**
+   * Check if the engine's current tile can move horizontically
+   * @param velX The amount of columns to move, negative for moving left
+   * @return Whether or not it can move
+   */
+  public boolean canTileMoveHorizontically(int velX)
+  {
+    if (engine.getCurrentTile() == null) return false;
+
+    int hit = engine.getBoard().hitTest(engine.getCurrentTile(), engine.getTileRotation(),
+        engine.getTileCol() + velX, engine.getTileRow());
+    if (hit == BitBoard.NO_HIT) return true;
+
+    failReason = hit;
+    return false;
+  }
+
+  /**
+   * Check if the rotated version of the {@code #engine}'s current tile would exceed grid bounds or collide with another block
+   * @return Whether or not it is allowed for the current tile to rotate
+   */
+  public boolean canTileRotate()
+  {
+    if (engine.getCurrentTile() == null) return false;
+
+    int rotation = engine.getTileRotation() < 3 ? engine.getTileRotation() + 1 : 0;
+    return !engine.getBoard().collides(engine.getCurrentTile(), rotation, engine.getTileCol(), engine.getTileRow());
+  }
+
+  /**
+   * Check if the game is lost by checking whether the highest column reaches the top of the board
+   * @return Whether or not the game is lost
+   */
+  public boolean hasPlayerLost()
+  {
+    return engine.getBoard().getStatistics().getMaxHeight() >= engine.getRows();
+  }
+
+  /**
+   * Check if the last time the tile has failed to move horizontically it was because it would have hit another block
+   * @return Whether or not the last fail reason was another block
+   */
+  public boolean hasTileHitBlock()
+  {
+    return failReason == HIT_BLOCK;
+  }
+
+  /**
+   * Check if the engine's current tile can move down.
+   * @return Whether or not the tile can move down
+   */
+  public boolean canTileMoveDown()
+  {
+    return !engine.getBoard().collides(engine.getCurrentTile(), engine.getTileRotation(),
+        engine.getTileCol(), engine.getTileRow() + 1);
+  }
+}
@@ -0,0 +1,575 @@
+package com.github.fahjulian.tetris.engine;
+
+import com.github.fahjulian.tetris.gameobject.Tile;
+import com.github.fahjulian.tetris.util.Clock;
+import com.github.fahjulian.tetris.util.TimeSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The rules of a single game of Tetris without any dependency on Swing. The game only advances
+ * when it is stepped, either by an explicit amount of ticks with {@link #step(Input, int)} or by
+ * the time passed on its {@code TimeSource} with {@link #update(Input)}.
+ */
+public class Engine
+{
+  /**
+   * Gets notified of every step of an engine, e.g. to record a game
+   */
+  public static interface StepListener
+  {
+    /**
+     * Called before a step is applied. Not called while the game is over.
+     * @param input The input of the step
+     * @param ticks The amount of ticks of the step
+     */
+    public void onStep(Input input, int ticks);
+  }
+
+  /**
+   * Gets notified whenever the current tile locks, e.g. to send garbage to opponents
+   */
+  public static interface LockListener
+  {
+    /**
+     * Called after a tile locked and the rows it completed were cleared
+     * @param clearedRows The amount of cleared rows
+     */
+    public void onLock(int clearedRows);
+  }
+
+  /** The amount of ticks that make up one second of game time */
+  public static final int TICKS_PER_SECOND;
+  /** The amount of upcoming tiles that can be peeked by default */
+  public static final int LOOKAHEAD;
+  /** The tile garbage rows are drawn as */
+  public static final Tile GARBAGE_TILE;
+  /** The amount of rows the current tile moves down per second normally */
+  private static final int NORMAL_SPEED;
+  /** The amount of rows the current tile moves down per second when accelerated */
+  private static final int ACCELERATED_SPEED;
+
+  private final int rows;
+  private final int cols;
+  private final Board board;
+  private final Clock clock;
+  private final CollisionManager collisionManager;
+  private final PieceGenerator generator;
+
+  private Tile currentTile;
+  private int tileRotation;
+  private int tileCol;
+  private int tileRow;
+  private boolean accelerated;
+  /** Ticks passed since the current tile last moved down */
+  private int gravityTicks;
+  private long ticks;
+  private int score;
+  private int totalClearedRows;
+  private int piecesLocked;
+  private boolean gameOver;
+  private StepListener stepListener;
+  private LockListener lockListener;
+
+  static
+  {
+    TICKS_PER_SECOND = 1000;
+    LOOKAHEAD = 5;
+    GARBAGE_TILE = Tile.CUBE;
+    NORMAL_SPEED = 1;
+    ACCELERATED_SPEED = 15;
+  }
+
+  /**
+   * Constructs a new game with randomly drawn tiles, reading real time from {@link TimeSource#SYSTEM}
+   * @param rows Amount of rows of the board
+   * @param cols Amount of columns of the board
+   */
+  public Engine(int rows, int cols)
+  {
+    this(rows, cols, System.nanoTime());
+  }
+
+  /**
+   * Constructs a new game with randomly drawn tiles, reading real time from {@link TimeSource#SYSTEM}
+   * @param rows Amount of rows of the board
+   * @param cols Amount of columns of the board
+   * @param seed Seed of the tile sequence
+   */
+  public Engine(int rows, int cols, long seed)
+  {
+    this(rows, cols, TimeSource.SYSTEM, new PieceGenerator(PieceGenerator.Mode.RANDOM, seed, LOOKAHEAD));
+  }
+
+  /**
+   * Constructs a new game
+   * @param rows Amount of rows of the board
+   * @param cols Amount of columns of the board
+   * @param timeSource Source of the time used by {@link #update(Input)}
+   * @param generator Generator of the tile sequence, owned by this game from now on
+   */
+  public Engine(int rows, int cols, TimeSource timeSource, PieceGenerator generator)
+  {
+    this.rows = rows;
+    this.cols = cols;
+    this.board = new Board(rows, cols);
+    this.clock = new Clock(timeSource);
+    this.collisionManager = new CollisionManager(this);
+    this.generator = generator;
+    reset(generator.getSeed());
+  }
+
+  /**
+   * Start a new game on an empty board, with a seed derived from the previous game's seed
+   */
+  public void reset()
+  {
+    reset(generator.nextSeed());
+  }
+
+  /**
+   * Start a new game on an empty board
+   * @param seed Seed of the tile sequence
+   */
+  public void reset(long seed)
+  {
+    board.clear();
+    generator.reset(seed);
+    currentTile = generator.next();
+    accelerated = false;
+    ticks = 0;
+    score = 0;
+    totalClearedRows = 0;
+    piecesLocked = 0;
+    gameOver = false;
+    resetTile();
+    clock.reset();
+  }
+
+  /**
+   * Apply an input and advance the game by the ticks passed on the time source since the last
+   * update.
+   * @param input The input to apply before advancing
+   */
+  public void update(Input input)
+  {
+    step(input, clock.getTicks(TICKS_PER_SECOND));
+  }
+
+  /**
+   * Discard the time passed on the time source since the last update, e.g. while the game was
+   * paused.
+   */
+  public void resetClock()
+  {
+    clock.reset();
+  }
+
+  /**
+   * Apply an input and then advance the game by the given amount of ticks. Stepping by {@code a}
+   * and then by {@code b} ticks has the same outcome as stepping by {@code a + b} ticks.
+   * @param input The input to apply before advancing
+   * @param ticks The amount of ticks to advance, see {@link #TICKS_PER_SECOND}
+   */
+  public void step(Input input, int ticks)
+  {
+    if (gameOver) return;
+    if (stepListener != null) stepListener.onStep(input, ticks);
+
+    applyInput(input);
+
+    // Move the current tile down every time the gravity interval has passed
+    while (ticks > 0 && !gameOver)
+    {
+      // After accelerating the tile may already be overdue, it then moves with the next tick
+      int untilMove = Math.max(getGravityInterval() + 1 - gravityTicks, 0);
+      if (ticks < untilMove)
+      {
+        gravityTicks += ticks;
+        this.ticks += ticks;
+        return;
+      }
+
+      ticks -= untilMove;
+      this.ticks += untilMove;
+      moveDown();
+    }
+  }
+
+  private void applyInput(Input input)
+  {
+    switch (input)
+    {
+      case LEFT:
+      case RIGHT:
+        int velX = input == Input.RIGHT ? 1 : -1;
+        if (collisionManager.canTileMoveHorizontically(velX))
+          tileCol += velX;
+        else if (collisionManager.hasTileHitBlock())
+          lockTile();
+        break;
+      case ROTATE:
+        if (collisionManager.canTileRotate())
+          tileRotation = tileRotation < 3 ? tileRotation + 1 : 0;
+        break;
+      case ACCELERATE:
+        accelerated = true;
+        break;
+      case DECELERATE:
+        accelerated = false;
+        break;
+      case DOWN:
+        moveDown();
+        break;
+      default: break;
+    }
+  }
+
+  private void moveDown()
+  {
+    if (collisionManager.canTileMoveDown()) tileRow++;
+    else lockTile();
+    gravityTicks = 0;
+  }
+
+  /**
+   * Place the current tile on the board, clear completed rows and spawn the next tile
+   */
+  private void lockTile()
+  {
+    board.place(currentTile, tileRotation, tileCol, tileRow);
+    piecesLocked++;
+    // Only the rows of the tile can have been completed by it
+    int clearedRows = clearCompleteRows(tileRow + currentTile.getMinRow(tileRotation),
+        tileRow + currentTile.getMaxRow(tileRotation));
+    updateScore(clearedRows);
+    if (lockListener != null) lockListener.onLock(clearedRows);
+
+    if (collisionManager.hasPlayerLost())
+      gameOver = true;
+
+    currentTile = generator.next();
+    resetTile();
+  }
+
+  /**
+   * Push garbage rows in from the bottom of the board, e.g. sent by an opponent. The current tile
+   * is pushed up along with the blocks if they would overlap it. Not recorded by a
+   * {@code StepListener}.
+   * @param rows The amount of rows
+   * @param gap The column left empty in all of the rows
+   */
+  public void addGarbage(int rows, int gap)
+  {
+    if (gameOver) return;
+
+    for (int row = 0; row < rows; row++)
+      board.addRow(GARBAGE_TILE, gap);
+    while (tileRow + currentTile.getMinRow(tileRotation) > 0 && 
+        board.collides(currentTile, tileRotation, tileCol, tileRow))
+      tileRow--;
+
+    if (collisionManager.hasPlayerLost() || board.collides(currentTile, tileRotation, tileCol, tileRow))
+      gameOver = true;
+  }
+
+  /**
+   * Erase all complete rows from the board
+   * @return The amount of erased rows
+   */
+  int clearCompleteRows()
+  {
+    return clearCompleteRows(0, rows - 1);
+  }
+
+  /**
+   * Erase the complete rows in a range of rows. Rows below the range are not moved, so the range
+   * stays the same while rows are erased.
+   * @param top The topmost row to check
+   * @param bottom The bottommost row to check
+   * @return The amount of erased rows
+   */
+  int clearCompleteRows(int top, int bottom)
+  {
+    int clearedRows = 0;
+    for (int row = Math.max(top, 0); row <= Math.min(bottom, rows - 1); row++)
+      if (board.isRowFull(row))
+      {
+        board.eraseRow(row);
+        clearedRows++;
+      }
+    return clearedRows;
+  }
+
+  /**
+   * Get the collision manager checking the moves of the current tile
+   * @return The engine's {@code CollisionManager}
+   */
+  CollisionManager getCollisionManager()
+  {
+    return collisionManager;
+  }
+
+  private void resetTile()
+  {
+    tileRotation = 0;
+    tileCol = cols / 2 - 2;
+    tileRow = 0;
+    gravityTicks = 0;
+  }
+
+  /**
+   * Update the score for the amount of cleared rows using the official tetris score system.
+   * @param clearedRows The amount of rows that have been cleared at one time
+   */
+  private void updateScore(int clearedRows)
+  {
+    int points = 0;
+    switch (clearedRows)
+    {
+      case 1: points = 40; break;
+      case 2: points = 100; break;
+      case 3: points = 300; break;
+      case 4: points = 1200; break;
+      default: return;
+    }
+
+    points *= getLevel() + 1;
+    totalClearedRows += clearedRows;
+    score += points;
+  }
+
+  /**
+   * Get the most bytes {@link #save(ByteBuffer)} writes for a board of the given size
+   * @param rows Amount of rows of the board
+   * @param cols Amount of columns of the board
+   * @param generator The generator of the tile sequence
+   * @return The size in bytes
+   */
+  public static int getMaxStateSize(int rows, int cols, PieceGenerator generator)
+  {
+    return 38 + generator.getStateSize() + rows * ((cols + 1) / 2);
+  }
+
+  /**
+   * Write the complete state of the game, so it can be continued exactly where it is with
+   * {@link #restore(ByteBuffer)}. Only the rows up to the highest block are written, two cells
+   * per byte, so saving takes time in the height of the stack rather than the size of the board.
+   * @param out The buffer to write at most {@link #getMaxStateSize(int, int, PieceGenerator)}
+   *     bytes to
+   */
+  public void save(ByteBuffer out)
+  {
+    out.putShort((short) rows);
+    out.putShort((short) cols);
+    out.put((byte) currentTile.ordinal());
+    out.put((byte) tileRotation);
+    out.putShort((short) tileCol);
+    out.putShort((short) tileRow);
+    out.put((byte) (accelerated ? 1 : 0));
+    out.put((byte) (gameOver ? 1 : 0));
+    out.putInt(gravityTicks);
+    out.putLong(ticks);
+    out.putInt(score);
+    out.putInt(totalClearedRows);
+    out.putInt(piecesLocked);
+    generator.save(out);
+
+    int height = board.getStatistics().getMaxHeight();
+    out.putShort((short) height);
+    for (int row = rows - height; row < rows; row++)
+      for (int col = 0; col < cols; col += 2)
+      {
+        int cells = cell(board.getTile(row, col));
+        if (col + 1 < cols) cells |= cell(board.getTile(row, col + 1)) << 4;
+        out.put((byte) cells);
+      }
+  }
+
+  private static int cell(Tile tile)
+  {
+    return tile == null ? 0 : tile.ordinal() + 1;
+  }
+
+  /**
+   * Continue a game written by {@link #save(ByteBuffer)}. Time passed on the time source since
+   * then is discarded.
+   * @param in The buffer to read from
+   * @throws IllegalArgumentException If the game was played on a board of another size
+   */
+  public void restore(ByteBuffer in)
+  {
+    int savedRows = in.getShort() & 0xffff;
+    int savedCols = in.getShort() & 0xffff;
+    if (savedRows != rows || savedCols != cols)
+      throw new IllegalArgumentException("Saved game has a board of " + savedRows + "x" + savedCols);
+
+    Tile[] tiles = Tile.values();
+    currentTile = tiles[in.get()];
+    tileRotation = in.get();
+    tileCol = in.getShort();
+    tileRow = in.getShort();
+    accelerated = in.get() != 0;
+    gameOver = in.get() != 0;
+    gravityTicks = in.getInt();
+    ticks = in.getLong();
+    score = in.getInt();
+    totalClearedRows = in.getInt();
+    piecesLocked = in.getInt();
+    generator.restore(in);
+
+    board.clear();
+    int height = in.getShort() & 0xffff;
+    for (int row = rows - height; row < rows; row++)
+      for (int col = 0; col < cols; col += 2)
+      {
+        int cells = in.get() & 0xff;
+        if ((cells & 0xf) != 0) board.setTile(row, col, tiles[(cells & 0xf) - 1]);
+        if (cells >>> 4 != 0) board.setTile(row, col + 1, tiles[(cells >>> 4) - 1]);
+      }
+    clock.reset();
+  }
+
+  /**
+   * Set the listener notified of every step
+   * @param stepListener The listener, or {@code null} to remove it
+   */
+  public void setStepListener(StepListener stepListener)
+  {
+    this.stepListener = stepListener;
+  }
+
+  /**
+   * Set the listener notified whenever a tile locks
+   * @param lockListener The listener, or {@code null} to remove it
+   */
+  public void setLockListener(LockListener lockListener)
+  {
+    this.lockListener = lockListener;
+  }
+
+  public Board getBoard()
+  {
+    return board;
+  }
+
+  public Tile getCurrentTile()
+  {
+    return currentTile;
+  }
+
+  public Tile getNextTile()
+  {
+    return generator.peek(0);
+  }
+
+  /**
+   * Look at an upcoming tile without creating any objects
+   * @param depth How far to look ahead, 0 being the next tile
+   * @return The upcoming tile
+   * @see PieceGenerator#peek(int)
+   */
+  public Tile getUpcomingTile(int depth)
+  {
+    return generator.peek(depth);
+  }
+
+  /**
+   * Get the seed the tile sequence of the current game was started from
+   * @return The seed
+   */
+  public long getSeed()
+  {
+    return generator.getSeed();
+  }
+
+  public PieceGenerator getGenerator()
+  {
+    return generator;
+  }
+
+  public int getTileRotation()
+  {
+    return tileRotation;
+  }
+
+  /**
+   * Get the column of the top-left corner of the current tile's shape
+   * @return The column, negative if the shape sticks out on the left
+   */
+  public int getTileCol()
+  {
+    return tileCol;
+  }
+
+  /**
+   * Get the row of the top-left corner of the current tile's shape
+   * @return The row
+   */
+  public int getTileRow()
+  {
+    return tileRow;
+  }
+
+  /**
+   * Get the amount of ticks after which the current tile moves down by one row
+   * @return The gravity interval at the current speed
+   */
+  public int getGravityInterval()
+  {
+    return TICKS_PER_SECOND / (accelerated ? ACCELERATED_SPEED : NORMAL_SPEED);
+  }
+
+  public boolean isAccelerated()
+  {
+    return accelerated;
+  }
+
+  public boolean isGameOver()
+  {
+    return gameOver;
+  }
+
+  public int getScore()
+  {
+    return score;
+  }
+
+  /**
+   * Get the level, which raises every 10 cleared rows and multiplies the points for clearing rows
+   * @return The level, starting at 0
+   */
+  public int getLevel()
+  {
+    return totalClearedRows / 10;
+  }
+
+  public int getClearedRows()
+  {
+    return totalClearedRows;
+  }
+
+  public int getPiecesLocked()
+  {
+    return piecesLocked;
+  }
+
+  /**
+   * Get the amount of ticks the game has been advanced by since it started
+   * @return The game time in ticks
+   */
+  public long getTicks()
+  {
+    return ticks;
+  }
+
+  public int getRows()
+  {
+    return rows;
+  }
+
+  public int getCols()
+  {
+    return cols;
+  }
+}
@@ -0,0 +1,10 @@
+package com.github.fahjulian.tetris.engine;
+
+/**
+ * The inputs a player can give to an {@code Engine}
+ */
+public enum Input {
+  NONE, LEFT, RIGHT, ROTATE, ACCELERATE, DECELERATE, 
+  /** Move the current tile down by one row right away, locking it if it cannot move down */
+  DOWN;
+}
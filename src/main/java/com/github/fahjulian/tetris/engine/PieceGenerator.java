@@ -0,0 +1,180 @@
+package com.github.fahjulian.tetris.engine;
+
+import com.github.fahjulian.tetris.gameobject.Tile;
+import com.github.fahjulian.tetris.util.SplitMixRandom;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The sequence of tiles of one game. Every game owns its own generator, so games seeded the same
+ * get the same tiles no matter how many games run at once. Upcoming tiles are kept in a fixed size
+ * look-ahead queue which can be peeked without creating any objects.
+ */
+public class PieceGenerator
+{
+  public static enum Mode {
+    /** Every tile is drawn independently, like the original game */
+    RANDOM, 
+    /** All 7 tiles are dealt in a shuffled bag before any tile repeats */
+    BAG;
+  }
+
+  private static final Tile[] TILES;
+
+  private final Mode mode;
+  private final SplitMixRandom random;
+  private final Tile[] bag;
+  private final Tile[] queue;
+
+  private long seed;
+  private int bagIndex;
+  /** Index of the first upcoming tile in the circular {@link #queue} */
+  private int head;
+
+  static
+  {
+    TILES = Tile.values();
+  }
+
+  /**
+   * Constructs a new generator
+   * @param mode How the tiles are drawn
+   * @param seed The seed of the sequence
+   * @param lookahead The amount of upcoming tiles that can be peeked, at least 1
+   */
+  public PieceGenerator(Mode mode, long seed, int lookahead)
+  {
+    if (lookahead < 1) throw new IllegalArgumentException("Lookahead must be at least 1");
+    this.mode = mode;
+    this.random = new SplitMixRandom(seed);
+    this.bag = TILES.clone();
+    this.queue = new Tile[lookahead];
+    reset(seed);
+  }
+
+  /**
+   * Restart the sequence from a new seed
+   * @param seed The seed of the sequence
+   */
+  public void reset(long seed)
+  {
+    this.seed = seed;
+    random.setState(seed);
+    System.arraycopy(TILES, 0, bag, 0, TILES.length);
+    bagIndex = bag.length;
+    head = 0;
+    for (int i = 0; i < queue.length; i++)
+      queue[i] = draw();
+  }
+
+  /**
+   * Take the next tile of the sequence
+   * @return The next tile
+   */
+  public Tile next()
+  {
+    Tile tile = queue[head];
+    queue[head] = draw();
+    head = head + 1 < queue.length ? head + 1 : 0;
+    return tile;
+  }
+
+  /**
+   * Look at an upcoming tile without taking it
+   * @param depth How far to look ahead, 0 being the tile {@link #next()} returns
+   * @return The upcoming tile
+   */
+  public Tile peek(int depth)
+  {
+    if (depth < 0 || depth >= queue.length) 
+      throw new IndexOutOfBoundsException("Can only peek " + queue.length + " tiles ahead");
+    int index = head + depth;
+    return queue[index < queue.length ? index : index - queue.length];
+  }
+
+  /**
+   * Derive a seed for the following game from this sequence, so a chain of games is reproducible
+   * from the first seed. Changes the upcoming tiles, so it should be followed by {@link #reset(long)}.
+   * @return A new seed
+   */
+  public long nextSeed()
+  {
+    return random.nextLong();
+  }
+
+  /**
+   * Get the size of the state written by {@link #save(ByteBuffer)}
+   * @return The size in bytes
+   */
+  public int getStateSize()
+  {
+    return 8 + 8 + 1 + bag.length + queue.length;
+  }
+
+  /**
+   * Write the exact position in the sequence: the seed, the state of the random generator, the
+   * bag and the upcoming tiles
+   * @param out The buffer to write {@link #getStateSize()} bytes to
+   */
+  public void save(ByteBuffer out)
+  {
+    out.putLong(seed);
+    out.putLong(random.getState());
+    out.put((byte) bagIndex);
+    for (int i = 0; i < bag.length; i++)
+      out.put((byte) bag[i].ordinal());
+    for (int depth = 0; depth < queue.length; depth++)
+      out.put((byte) peek(depth).ordinal());
+  }
+
+  /**
+   * Continue the sequence from a position written by {@link #save(ByteBuffer)} of a generator of
+   * the same look-ahead
+   * @param in The buffer to read from
+   */
+  public void restore(ByteBuffer in)
+  {
+    seed = in.getLong();
+    random.setState(in.getLong());
+    bagIndex = in.get();
+    for (int i = 0; i < bag.length; i++)
+      bag[i] = TILES[in.get()];
+    head = 0;
+    for (int i = 0; i < queue.length; i++)
+      queue[i] = TILES[in.get()];
+  }
+
+  private Tile draw()
+  {
+    if (mode == Mode.RANDOM) return TILES[random.nextInt(TILES.length)];
+
+    if (bagIndex == bag.length)
+    {
+      // Fisher-Yates shuffle of the bag in place
+      for (int i = bag.length - 1; i > 0; i--)
+      {
+        int j = random.nextInt(i + 1);
+        Tile swap = bag[i];
+        bag[i] = bag[j];
+        bag[j] = swap;
+      }
+      bagIndex = 0;
+    }
+    return bag[bagIndex++];
+  }
+
+  public Mode getMode()
+  {
+    return mode;
+  }
+
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  public int getLookahead()
+  {
+    return queue.length;
+  }
+}
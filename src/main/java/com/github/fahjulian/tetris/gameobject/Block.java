@@ -2,70 +2,93 @@ package com.github.fahjulian.tetris.gameobject;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.Point;
 import java.awt.Rectangle;
 
-public class Block 
+public class Block
 {
-  private Point pos;
-  private final int size;
+  private int row;
+  private int col;
   private final Color color;
 
   /**
-   * Construct a new Tetris Block (A single block, not a whole tile)
-   * @param pos Coordinates of the top-left corner
-   * @param size Size of the block
+   * Construct a new Tetris Block (A single block, not a whole tile). The block is addressed in
+   * cells of a grid, its position in pixels is only derived when rendering.
+   * @param row Row of the cell the block is in
+   * @param col Column of the cell the block is in
    * @param color Color of the block
    */
-  public Block(Point pos, int size, Color color)
+  public Block(int row, int col, Color color)
   {
-    this.pos = pos;
-    this.size = size;
+    this.row = row;
+    this.col = col;
     this.color = color;
   }
 
-  public void render(Graphics g) 
+  /**
+   * Render the block on a grid
+   * @param g The graphics to render to
+   * @param x X coordinate of the top-left corner of the grid
+   * @param y Y coordinate of the top-left corner of the grid
+   * @param size Size of one cell of the grid
+   */
+  public void render(Graphics g, int x, int y, int size)
+  {
+    render(g, x + col * size, y + row * size, size, color);
+  }
+
+  /**
+   * Render a block without having to construct a {@code Block}. Derives the shades of the color on
+   * every call, so frequently rendered blocks should be blitted from a {@code BlockAtlas} instead.
+   * @param g The graphics to render to
+   * @param x X coordinate of the top-left corner
+   * @param y Y coordinate of the top-left corner
+   * @param size Size of the block
+   * @param color Color of the block
+   */
+  public static void render(Graphics g, int x, int y, int size, Color color)
   {
     // Draw outline in darker color
     g.setColor(color.darker());
-    g.fillRect(pos.x, pos.y, size, size);
+    g.fillRect(x, y, size, size);
     // Draw whole in brigther color
     g.setColor(color.brighter());
-    g.fillRect(pos.x + 3, pos.y + 3, size - 6, size - 6);
+    g.fillRect(x + 3, y + 3, size - 6, size - 6);
   }
 
-  public void setPos(Point pos) 
+  public void setRow(int row)
   {
-    this.pos = pos;
+    this.row = row;
   }
 
-  public void setX(int x)
+  public void setCol(int col)
   {
-    this.pos.x = x;
+    this.col = col;
   }
 
-  public void setY(int y) 
+  public int getRow()
   {
-    this.pos.y = y;
+    return row;
   }
 
-  public int getX()
+  public int getCol()
   {
-    return pos.x;
+    return col;
   }
 
-  public int getY()
+  public Color getColor()
   {
-    return pos.y;
+    return color;
   }
 
-  public Point getPos() 
-  {
-    return pos;
-  }
-
-  public Rectangle getBounds()
+  /**
+   * Get the area the block covers on a grid
+   * @param x X coordinate of the top-left corner of the grid
+   * @param y Y coordinate of the top-left corner of the grid
+   * @param size Size of one cell of the grid
+   * @return The bounds in pixels
+   */
+  public Rectangle getBounds(int x, int y, int size)
   {
-    return new Rectangle(pos.x, pos.y, size, size);
+    return new Rectangle(x + col * size, y + row * size, size, size);
   }
 }
@@ -1,16 +1,12 @@
 package com.github.fahjulian.tetris.gameobject;
 
-import com.github.fahjulian.tetris.Grid;
-
 import java.util.ArrayList;
-import java.util.Random;
 
 import java.awt.Color;
-import java.awt.Point;
 
 public enum Tile 
 {
-  CUBE(Color.YELLOW, new Boolean[][][] { 
+  CUBE(Color.YELLOW, new boolean[][][] { 
     { { false, true,  true,  false }, 
       { false, true,  true,  false }, 
       { false, false, false, false },
@@ -32,7 +28,7 @@ public enum Tile
       { false, false, false, false } },
   }),
 
-  T(Color.MAGENTA, new Boolean[][][] { 
+  T(Color.MAGENTA, new boolean[][][] { 
     { { true,  true,  true,  false }, 
       { false, true,  false, false }, 
       { false, false, false, false },
@@ -53,7 +49,7 @@ public enum Tile
       { false, true,  false, false },
       { false, false, false, false } },
   }),
-  I(Color.CYAN, new Boolean[][][] { 
+  I(Color.CYAN, new boolean[][][] { 
     { { false, true,  false, false }, 
       { false, true,  false, false }, 
       { false, true,  false, false },
@@ -74,7 +70,7 @@ public enum Tile
       { false, false, false, false },
       { false, false, false, false } },
   }),
-  J(Color.BLUE, new Boolean[][][] { 
+  J(Color.BLUE, new boolean[][][] { 
     { { false, false, true,  false }, 
       { false, false, true,  false }, 
       { false, true,  true,  false },
@@ -95,7 +91,7 @@ public enum Tile
       { false, false, false, false },
       { false, false, false, false } },
   }),
-  L(new Color(255, 108, 0) /* Orange */, new Boolean[][][] { 
+  L(new Color(255, 108, 0) /* Orange */, new boolean[][][] { 
     { { false, true,  false, false }, 
       { false, true,  false, false }, 
       { false, true,  true,  false },
@@ -116,7 +112,7 @@ public enum Tile
       { false, false, false, false },
       { false, false, false, false } },
   }),
-  S(Color.GREEN, new Boolean[][][] { 
+  S(Color.GREEN, new boolean[][][] { 
     { { false, true,  true,  false }, 
       { true,  true,  false, false }, 
       { false, false, false, false },
@@ -138,7 +134,7 @@ public enum Tile
       { false, false, false, false } },
 
   }),
-  Z(Color.RED, new Boolean[][][] {
+  Z(Color.RED, new boolean[][][] {
     { { true,  true,  false, false }, 
       { false, true,  true, false },
       { false, false, false, false }, 
@@ -160,50 +156,130 @@ public enum Tile
       { false, false, false, false } },
   });
 
-  private static ArrayList<Tile> allTiles;
+  /** The amount of cells every tile consists of */
+  public static final int CELLS = 4;
+  /** The width and height of the square every tile shape is defined in */
+  public static final int SHAPE_SIZE = 4;
+
   public final Color color;
-  /** The 2-Dimensional shapes of the tile for every rotation */
-  private final Boolean[][][] shapes;
+  /** The shapes as one bitmask per shape row, bit {@code n} being set if column {@code n} is filled */
+  private final int[][] rowMasks;
+  /** The shape row of every cell for every rotation, ordered top-left to bottom-right */
+  private final int[][] cellRows;
+  /** The shape column of every cell for every rotation, ordered top-left to bottom-right */
+  private final int[][] cellCols;
+  /** The bounding box of the filled cells for every rotation as {minCol, minRow, maxCol, maxRow} */
+  private final int[][] extents;
 
-  private Tile(Color color, Boolean[][][] shapes) 
+  private Tile(Color color, boolean[][][] shapes) 
   {
-    this.shapes = shapes;
     this.color = color;
-    register(this);
+    this.rowMasks = new int[4][SHAPE_SIZE];
+    this.cellRows = new int[4][CELLS];
+    this.cellCols = new int[4][CELLS];
+    this.extents = new int[4][];
+    for (int rotation = 0; rotation < 4; rotation++)
+    {
+      int cell = 0;
+      int[] extent = { SHAPE_SIZE, SHAPE_SIZE, -1, -1 };
+      for (int row = 0; row < SHAPE_SIZE; row++)
+        for (int col = 0; col < SHAPE_SIZE; col++)
+          if (shapes[rotation][row][col]) 
+          {
+            rowMasks[rotation][row] |= 1 << col;
+            cellRows[rotation][cell] = row;
+            cellCols[rotation][cell] = col;
+            cell++;
+            extent[0] = Math.min(extent[0], col);
+            extent[1] = Math.min(extent[1], row);
+            extent[2] = Math.max(extent[2], col);
+            extent[3] = Math.max(extent[3], row);
+          }
+      if (cell != CELLS) throw new Error("Every tile shape must have exactly " + CELLS + " cells");
+      extents[rotation] = extent;
+    }
+  }
+
+  /**
+   * Get the filled columns of one row of the tile's shape
+   * @param rotation The rotation state of the tile (between 0 and 3)
+   * @param row The row of the 4x4 shape (between 0 and 3)
+   * @return Bitmask with bit {@code n} set if column {@code n} of the row is filled
+   */
+  public int getRowMask(int rotation, int row)
+  {
+    return rowMasks[rotation][row];
   }
 
-  private static void register(Tile tile)
+  /**
+   * Check if a cell of the tile's 4x4 shape is filled
+   * @param rotation The rotation state of the tile (between 0 and 3)
+   * @param row The row of the 4x4 shape (between 0 and 3)
+   * @param col The column of the 4x4 shape (between 0 and 3)
+   * @return Whether or not the cell is filled
+   */
+  public boolean isOccupied(int rotation, int row, int col)
+  {
+    return (rowMasks[rotation][row] & (1 << col)) != 0;
+  }
+
+  /**
+   * Get the shape row of one of the tile's cells. Together with {@link #getCellCol(int, int)} this
+   * allows iterating the cells from {@code 0} to {@link #CELLS} without creating any objects.
+   * @param rotation The rotation state of the tile (between 0 and 3)
+   * @param cell Index of the cell (between 0 and 3)
+   * @return The row of the cell in the 4x4 shape
+   */
+  public int getCellRow(int rotation, int cell)
   {
-    if (allTiles == null) allTiles = new ArrayList<Tile>();
-    allTiles.add(tile);
+    return cellRows[rotation][cell];
   }
 
   /**
-   * Selects a random entry from the {@code ArrayList} of registered Tiles
-   * @return A random Tile
+   * Get the shape column of one of the tile's cells
+   * @param rotation The rotation state of the tile (between 0 and 3)
+   * @param cell Index of the cell (between 0 and 3)
+   * @return The column of the cell in the 4x4 shape
    */
-  public static Tile randomTile()
+  public int getCellCol(int rotation, int cell)
+  {
+    return cellCols[rotation][cell];
+  }
+
+  public int getMinCol(int rotation)
+  {
+    return extents[rotation][0];
+  }
+
+  public int getMinRow(int rotation)
+  {
+    return extents[rotation][1];
+  }
+
+  public int getMaxCol(int rotation)
+  {
+    return extents[rotation][2];
+  }
+
+  public int getMaxRow(int rotation)
   {
-    int index = new Random().nextInt(allTiles.size());
-    return allTiles.get(index);
+    return extents[rotation][3];
   }
 
   /**
    * Construct a {@code Block} {@code ArrayList} representating the Tile on a {@code Grid}.
+   * Allocates, prefer iterating the cells with {@link #getCellRow(int, int)} and {@link #getCellCol(int, int)}.
    * @param rotation The rotation state of the tile to get the blocks for (between 0 and 3)
-   * @param pos Coordinates of the top-left position of the tile on the {@code Window}.
+   * @param col The column of the top-left corner of the tile's shape
+   * @param row The row of the top-left corner of the tile's shape
    * @return {@code ArrayList}<{@code Block}> representating the Tile
    */
-  public ArrayList<Block> toBlockArray(int rotation, Point pos)
+  public ArrayList<Block> toBlockArray(int rotation, int col, int row)
   {
     if (rotation < 0 || rotation > 3) throw new Error("Rotation must be between 0 and 3");
-    ArrayList<Block> blocks = new ArrayList<Block>(5);
-    for (int row = 0; row < 4; row++)
-      for (int col = 0; col < 4; col++)
-        if (shapes[rotation][row][col]) {
-          Point blockPos = new Point(pos.x + col * Grid.BLOCKSIZE, pos.y + row * Grid.BLOCKSIZE);
-          blocks.add(new Block(blockPos, Grid.BLOCKSIZE, color));
-        }
+    ArrayList<Block> blocks = new ArrayList<Block>(CELLS);
+    for (int cell = 0; cell < CELLS; cell++) 
+      blocks.add(new Block(row + cellRows[rotation][cell], col + cellCols[rotation][cell], color));
     return blocks;
   }
 }
@@ -0,0 +1,113 @@
+package com.github.fahjulian.tetris.host;
+
+import com.github.fahjulian.tetris.Grid;
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.sim.GreedyPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Measures how well a {@code SessionHost} keeps the tick deadlines of a growing amount of bot
+ * sessions. Every session plays greedy bot games at 60Hz, starting a new game whenever one is
+ * over, and the share of missed deadlines is reported for every amount of sessions.
+ */
+public class HostBenchmark
+{
+  private static final int TICK_RATE;
+  private static final long WARMUP_NANOS;
+
+  static
+  {
+    TICK_RATE = 60;
+    WARMUP_NANOS = 2000000000L;
+  }
+
+  private HostBenchmark() {}
+
+  /**
+   * Host an amount of sessions for a while and print how they kept up
+   * @param executor Runs the ticks
+   * @param count The amount of sessions
+   * @param seconds How long to measure after warming up
+   */
+  private static void run(ExecutorService executor, int count, int seconds) throws InterruptedException
+  {
+    final SessionHost[] host = new SessionHost[1];
+    host[0] = new SessionHost(TICK_RATE, executor, new SessionHost.Listener() {
+      @Override
+      public void onEnd(Session session)
+      {
+        session.getEngine().reset();
+        host[0].add(session, host[0].getTickNanos());
+      }
+    });
+
+    long heap = usedHeap();
+    List<Session> sessions = new ArrayList<Session>(count);
+    for (int i = 0; i < count; i++)
+      sessions.add(new Session(i, new Engine(Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, i), new PolicyDriver(new GreedyPolicy())));
+    heap = usedHeap() - heap;
+
+    // Spread the first ticks over one tick, so the sessions are not all due at the same time
+    for (int i = 0; i < count; i++)
+      host[0].add(sessions.get(i), host[0].getTickNanos() * i / count);
+    host[0].start();
+    Thread.sleep(WARMUP_NANOS / 1000000);
+
+    long[] before = totals(sessions);
+    long start = System.nanoTime();
+    Thread.sleep(seconds * 1000L);
+    long[] after = totals(sessions);
+    double elapsed = (System.nanoTime() - start) / 1e9;
+    host[0].stop();
+
+    long ticks = after[0] - before[0];
+    System.out.printf("%6d sessions: %5.1f ticks/s per session, %6.2f%% missed deadlines, mean lateness %7.1fus, " +
+        "max lateness %6.1fms, %5.1fus per tick, %5.1fKB per session%n", count, ticks / elapsed / count,
+        100.0 * (after[1] - before[1]) / Math.max(ticks, 1), (after[2] - before[2]) / 1e3 / Math.max(ticks, 1),
+        after[3] / 1e6, (after[4] - before[4]) / 1e3 / Math.max(ticks, 1), heap / 1024.0 / count);
+  }
+
+  /**
+   * Sum up the accounts of all sessions
+   * @return Ticks, missed deadlines, lateness, maximum lateness and busy time
+   */
+  private static long[] totals(List<Session> sessions)
+  {
+    long[] totals = new long[5];
+    for (Session session: sessions)
+    {
+      totals[0] += session.getTicks();
+      totals[1] += session.getMissedDeadlines();
+      totals[2] += session.getLatenessNanos();
+      totals[3] = Math.max(totals[3], session.getMaxLatenessNanos());
+      totals[4] += session.getBusyNanos();
+    }
+    return totals;
+  }
+
+  private static long usedHeap()
+  {
+    System.gc();
+    return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+  }
+
+  /**
+   * Run the benchmark from the command line
+   * @param args [amounts of sessions, comma separated] [seconds per amount] [platform threads if there are no virtual threads]
+   */
+  public static void main(String[] args) throws InterruptedException
+  {
+    String counts = args.length > 0 ? args[0] : "1000,2500,5000,10000,20000";
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+    ExecutorService executor = SessionHost.newExecutor(threads);
+    System.out.printf("Running ticks on %s%n", executor.getClass().getSimpleName());
+    for (String count: counts.split(","))
+      run(executor, Integer.parseInt(count.trim()), seconds);
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,45 @@
+package com.github.fahjulian.tetris.host;
+
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.engine.Input;
+import com.github.fahjulian.tetris.sim.Placement;
+import com.github.fahjulian.tetris.sim.PlacementPolicy;
+
+/**
+ * Plays a session with a {@code PlacementPolicy} at the pace of a player: one input per tick,
+ * rotating and moving every tile to its placement and then letting it fall accelerated.
+ */
+public class PolicyDriver implements Session.Driver
+{
+  private final PlacementPolicy policy;
+  private final Placement placement;
+  /** The amount of locked tiles when the placement was chosen, so a new tile is noticed */
+  private int piecesLocked;
+
+  /**
+   * Constructs a new driver
+   * @param policy The policy choosing the placements, only used by this driver
+   */
+  public PolicyDriver(PlacementPolicy policy)
+  {
+    this.policy = policy;
+    this.placement = new Placement();
+    this.piecesLocked = -1;
+  }
+
+  @Override
+  public Input next(Engine engine)
+  {
+    if (engine.getPiecesLocked() != piecesLocked)
+    {
+      piecesLocked = engine.getPiecesLocked();
+      policy.choose(engine, placement);
+      if (engine.isAccelerated()) return Input.DECELERATE;
+    }
+
+    if (engine.getTileRotation() != placement.getRotation()) return Input.ROTATE;
+    if (engine.getTileCol() < placement.getCol()) return Input.RIGHT;
+    if (engine.getTileCol() > placement.getCol()) return Input.LEFT;
+    return engine.isAccelerated() ? Input.NONE : Input.ACCELERATE;
+  }
+}
@@ -0,0 +1,197 @@
+package com.github.fahjulian.tetris.host;
+
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.engine.Input;
+import com.github.fahjulian.tetris.metrics.Metrics;
+import com.github.fahjulian.tetris.util.KeyEventQueue;
+
+/**
+ * A game hosted by a {@code SessionHost} without a window. Every tick applies the inputs queued
+ * with {@link #offerInput(Input)} and the input of its {@code Driver}, then advances the game by
+ * one tick's worth of time. Ticks of the same session never overlap.
+ * <p>
+ * Keeps account of its ticks, missed deadlines, lateness and the time spent ticking, written only
+ * by the thread running the current tick and readable from any thread.
+ */
+public class Session
+{
+  /**
+   * Decides the input of every tick of a session, e.g. a bot
+   */
+  public static interface Driver
+  {
+    /**
+     * Choose the input of the next tick
+     * @param engine The game, which must not be modified
+     * @return The input
+     */
+    public Input next(Engine engine);
+  }
+
+  private static final Input[] INPUTS;
+  private static final int INPUT_CAPACITY;
+
+  private final long id;
+  private final Engine engine;
+  private final Driver driver;
+  private final KeyEventQueue inputs;
+  private SessionHost host;
+  /** When the next tick is due, in {@code System.nanoTime()} */
+  private long deadline;
+  private int tickInSecond;
+  private volatile boolean stopped;
+
+  private volatile long ticks;
+  private volatile long missedDeadlines;
+  private volatile long latenessNanos;
+  private volatile long maxLatenessNanos;
+  private volatile long busyNanos;
+
+  static
+  {
+    INPUTS = Input.values();
+    INPUT_CAPACITY = 16;
+  }
+
+  /**
+   * Constructs a new session
+   * @param id The id of the session, e.g. to tell sessions apart in listeners
+   * @param engine The game, stepped explicitly by the session from now on
+   * @param driver Decides the input of every tick, or {@code null} to only apply queued inputs
+   */
+  public Session(long id, Engine engine, Driver driver)
+  {
+    this.id = id;
+    this.engine = engine;
+    this.driver = driver;
+    this.inputs = new KeyEventQueue(INPUT_CAPACITY);
+  }
+
+  /**
+   * Queue an input for the next tick, e.g. from a client of a practice session. May only be
+   * called by one thread.
+   * @param input The input
+   * @return Whether the input was queued, or dropped because too many are queued
+   */
+  public boolean offerInput(Input input)
+  {
+    return inputs.offer(input.ordinal(), true, System.nanoTime());
+  }
+
+  /**
+   * Run one tick. Called by the worker the {@code SessionHost} dispatched the due session to.
+   */
+  void tick()
+  {
+    long start = System.nanoTime();
+    long lateness = start - deadline;
+    int tickRate = host.getTickRate();
+
+    while (inputs.poll())
+      engine.step(INPUTS[inputs.getKeyCode()], 0);
+    if (driver != null) engine.step(driver.next(engine), 0);
+    // Spread the ticks of a second evenly, e.g. 16 and 17 ticks at 60Hz
+    engine.step(Input.NONE, (int) ((tickInSecond + 1L) * Engine.TICKS_PER_SECOND / tickRate -
+        (long) tickInSecond * Engine.TICKS_PER_SECOND / tickRate));
+    tickInSecond = tickInSecond + 1 == tickRate ? 0 : tickInSecond + 1;
+
+    long end = System.nanoTime();
+    ticks++;
+    busyNanos += end - start;
+    latenessNanos += Math.max(lateness, 0);
+    if (lateness > maxLatenessNanos) maxLatenessNanos = lateness;
+    // A tick misses its deadline if it only ends after the next tick is due
+    boolean missed = end - deadline > host.getTickNanos();
+    Metrics.SESSION_LATENESS.record(lateness);
+    if (missed)
+    {
+      missedDeadlines++;
+      Metrics.MISSED_DEADLINES.increment();
+    }
+  }
+
+  /**
+   * Attach the session to a host, before it is scheduled the first time
+   * @param host The host
+   * @param deadline When the first tick is due, in {@code System.nanoTime()}
+   */
+  void start(SessionHost host, long deadline)
+  {
+    this.host = host;
+    this.deadline = deadline;
+    this.stopped = false;
+  }
+
+  /**
+   * Let the session leave its host after its current or next tick
+   */
+  void stop()
+  {
+    stopped = true;
+  }
+
+  boolean isStopped()
+  {
+    return stopped;
+  }
+
+  long getDeadline()
+  {
+    return deadline;
+  }
+
+  void setDeadline(long deadline)
+  {
+    this.deadline = deadline;
+  }
+
+  public long getId()
+  {
+    return id;
+  }
+
+  public Engine getEngine()
+  {
+    return engine;
+  }
+
+  /**
+   * @return The amount of ticks run
+   */
+  public long getTicks()
+  {
+    return ticks;
+  }
+
+  /**
+   * @return The amount of ticks that only ended after the next tick was due
+   */
+  public long getMissedDeadlines()
+  {
+    return missedDeadlines;
+  }
+
+  /**
+   * @return The sum of the time every tick started after it was due
+   */
+  public long getLatenessNanos()
+  {
+    return latenessNanos;
+  }
+
+  /**
+   * @return The longest time a tick started after it was due
+   */
+  public long getMaxLatenessNanos()
+  {
+    return maxLatenessNanos;
+  }
+
+  /**
+   * @return The time spent running ticks
+   */
+  public long getBusyNanos()
+  {
+    return busyNanos;
+  }
+}
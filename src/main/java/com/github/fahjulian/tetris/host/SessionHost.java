@@ -0,0 +1,289 @@
+package com.github.fahjulian.tetris.host;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hosts many headless {@code Session}s in one JVM. A single scheduler thread keeps the sessions
+ * ordered by when their next tick is due and hands the due sessions to an executor in batches, so
+ * a waiting session holds no thread at all and the cost of a handoff is shared by the sessions due
+ * at about the same time. The executor runs the batches on virtual threads where the JVM has
+ * them, see {@link #newExecutor(int)}.
+ */
+public class SessionHost implements Runnable
+{
+  /**
+   * Gets notified when a session leaves the host
+   */
+  public static interface Listener
+  {
+    /**
+     * Called after the last tick of a session, because its game is over, it was removed or its
+     * tick threw an exception. The session may be reset and added again.
+     * @param session The session
+     */
+    public void onEnd(Session session);
+  }
+
+  /** The amount of ticks a session may fall behind before the missed ones are skipped */
+  private static final int MAX_BACKLOG;
+  /** The most sessions ticked by one task of the executor */
+  private static final int BATCH_SIZE;
+
+  private final int tickRate;
+  private final long tickNanos;
+  private final Executor executor;
+  private final Listener listener;
+  /** The waiting sessions, the one due next first */
+  private final PriorityQueue<Session> queue;
+  private final ReentrantLock lock;
+  /** Signalled when a session due earlier than all others is added */
+  private final Condition wakeup;
+  private final AtomicInteger sessions;
+  private final Thread thread;
+  private volatile boolean running;
+
+  static
+  {
+    MAX_BACKLOG = 10;
+    BATCH_SIZE = 32;
+  }
+
+  /**
+   * Constructs a new host, which is started with {@link #start()}
+   * @param tickRate The ticks of every session per second
+   * @param executor Runs the ticks, see {@link #newExecutor(int)}
+   * @param listener Notified when a session leaves, or {@code null}
+   */
+  public SessionHost(int tickRate, Executor executor, Listener listener)
+  {
+    this.tickRate = tickRate;
+    this.tickNanos = TimeUnit.SECONDS.toNanos(1) / tickRate;
+    this.executor = executor;
+    this.listener = listener;
+    this.queue = new PriorityQueue<Session>(1024, new Comparator<Session>() {
+      @Override
+      public int compare(Session a, Session b)
+      {
+        long difference = a.getDeadline() - b.getDeadline();
+        return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+      }
+    });
+    this.lock = new ReentrantLock();
+    this.wakeup = lock.newCondition();
+    this.sessions = new AtomicInteger();
+    this.thread = new Thread(this, "Session scheduler");
+    thread.setDaemon(true);
+  }
+
+  /**
+   * Create an executor running every task on a new virtual thread if the JVM supports them (Java
+   * 21 and later), or on a fixed pool of platform threads otherwise
+   * @param threads The amount of platform threads if there are no virtual threads
+   * @return The executor
+   */
+  public static ExecutorService newExecutor(int threads)
+  {
+    try
+    {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    }
+    catch (ReflectiveOperationException e)
+    {
+      return Executors.newFixedThreadPool(threads);
+    }
+  }
+
+  public void start()
+  {
+    running = true;
+    thread.start();
+  }
+
+  /**
+   * Stop dispatching ticks. Ticks already dispatched still run, and the sessions stay as they are.
+   */
+  public void stop()
+  {
+    running = false;
+    lock.lock();
+    try
+    {
+      wakeup.signal();
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Start ticking a session
+   * @param session The session, not hosted by any host
+   * @param delayNanos The time until its first tick, e.g. to spread the ticks of many sessions
+   */
+  public void add(Session session, long delayNanos)
+  {
+    session.start(this, System.nanoTime() + delayNanos);
+    sessions.incrementAndGet();
+    schedule(session);
+  }
+
+  /**
+   * Stop ticking a session after its current or next tick
+   * @param session The session
+   */
+  public void remove(Session session)
+  {
+    session.stop();
+  }
+
+  private void schedule(Session session)
+  {
+    lock.lock();
+    try
+    {
+      queue.add(session);
+      if (queue.peek() == session) wakeup.signal();
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Dispatch the sessions to the executor as they become due
+   */
+  @Override
+  public void run()
+  {
+    List<Session> due = new ArrayList<Session>();
+    while (running)
+    {
+      lock.lock();
+      try
+      {
+        Session next = queue.peek();
+        long now = System.nanoTime();
+        if (next == null) wakeup.await();
+        else if (next.getDeadline() - now > 0) wakeup.awaitNanos(next.getDeadline() - now);
+        else
+          while (next != null && next.getDeadline() - now <= 0)
+          {
+            due.add(queue.poll());
+            next = queue.peek();
+          }
+      }
+      catch (InterruptedException e)
+      {
+        return;
+      }
+      finally
+      {
+        lock.unlock();
+      }
+
+      // Outside of the lock, so finished batches can schedule their next ticks meanwhile
+      for (int from = 0; from < due.size(); from += BATCH_SIZE)
+        executor.execute(new Batch(due.subList(from, Math.min(from + BATCH_SIZE, due.size()))));
+      due.clear();
+    }
+  }
+
+  /**
+   * Ticks sessions that became due at about the same time, then schedules their next ticks
+   */
+  private class Batch implements Runnable
+  {
+    private final Session[] batch;
+
+    Batch(List<Session> batch)
+    {
+      this.batch = batch.toArray(new Session[batch.size()]);
+    }
+
+    @Override
+    public void run()
+    {
+      for (Session session: batch)
+      {
+        try
+        {
+          session.tick();
+        }
+        catch (RuntimeException e)
+        {
+          // A broken session ends, the others of the batch go on
+          e.printStackTrace();
+          session.stop();
+        }
+      }
+
+      List<Session> ended = null;
+      boolean earliest = false;
+      long now = System.nanoTime();
+      lock.lock();
+      try
+      {
+        for (Session session: batch)
+        {
+          if (session.isStopped() || session.getEngine().isGameOver())
+          {
+            if (ended == null) ended = new ArrayList<Session>();
+            ended.add(session);
+            continue;
+          }
+
+          long deadline = session.getDeadline() + tickNanos;
+          // Rather skip ticks than run a long backlog back to back
+          if (now - deadline > MAX_BACKLOG * tickNanos) deadline = now;
+          session.setDeadline(deadline);
+          queue.add(session);
+          earliest |= queue.peek() == session;
+        }
+        if (earliest) wakeup.signal();
+      }
+      finally
+      {
+        lock.unlock();
+      }
+
+      if (ended == null) return;
+      for (Session session: ended)
+      {
+        sessions.decrementAndGet();
+        if (listener != null) listener.onEnd(session);
+      }
+    }
+  }
+
+  public int getTickRate()
+  {
+    return tickRate;
+  }
+
+  public long getTickNanos()
+  {
+    return tickNanos;
+  }
+
+  /**
+   * @return The amount of sessions currently hosted
+   */
+  public int getSessions()
+  {
+    return sessions.get();
+  }
+}
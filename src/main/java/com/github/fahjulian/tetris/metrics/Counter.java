@@ -0,0 +1,54 @@
+package com.github.fahjulian.tetris.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A number that only goes up, e.g. the amount of rendered frames
+ */
+public class Counter
+{
+  private final String name;
+  private final String help;
+  private final AtomicLong value;
+
+  /**
+   * Constructs a new counter starting at 0
+   * @param name Name of the counter, in snake case
+   * @param help What the counter counts
+   */
+  public Counter(String name, String help)
+  {
+    this.name = name;
+    this.help = help;
+    this.value = new AtomicLong();
+  }
+
+  public void increment()
+  {
+    value.incrementAndGet();
+  }
+
+  /**
+   * Add to the counter
+   * @param amount The amount to add, not negative
+   */
+  public void add(long amount)
+  {
+    value.addAndGet(amount);
+  }
+
+  public long get()
+  {
+    return value.get();
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  public String getHelp()
+  {
+    return help;
+  }
+}
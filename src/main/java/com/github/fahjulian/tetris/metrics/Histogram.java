@@ -0,0 +1,123 @@
+package com.github.fahjulian.tetris.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The distribution of a duration, e.g. the time it takes to render a frame. Values are counted in
+ * buckets growing exponentially with {@code 2^SUB_BITS} linear steps each, so every percentile is
+ * off by less than {@code 1/2^SUB_BITS}. Recording a value takes a few atomic operations and
+ * creates no objects.
+ */
+public class Histogram
+{
+  /** The amount of bits below the highest bit of a value that pick its bucket */
+  private static final int SUB_BITS;
+  private static final int SUB_BUCKETS;
+  private static final int BUCKETS;
+
+  private final String name;
+  private final String help;
+  private final AtomicLongArray buckets;
+  private final AtomicLong count;
+  private final AtomicLong sum;
+  private final AtomicLong max;
+
+  static
+  {
+    SUB_BITS = 3;
+    SUB_BUCKETS = 1 << SUB_BITS;
+    BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+  }
+
+  /**
+   * Constructs a new, empty histogram
+   * @param name Name of the histogram, in snake case
+   * @param help What the histogram measures
+   */
+  public Histogram(String name, String help)
+  {
+    this.name = name;
+    this.help = help;
+    this.buckets = new AtomicLongArray(BUCKETS);
+    this.count = new AtomicLong();
+    this.sum = new AtomicLong();
+    this.max = new AtomicLong();
+  }
+
+  /**
+   * Record a value
+   * @param nanos The value, in nanoseconds. Negative values are recorded as 0.
+   */
+  public void record(long nanos)
+  {
+    if (nanos < 0) nanos = 0;
+    buckets.incrementAndGet(bucketOf(nanos));
+    count.incrementAndGet();
+    sum.addAndGet(nanos);
+
+    long current;
+    while ((current = max.get()) < nanos && !max.compareAndSet(current, nanos));
+  }
+
+  /**
+   * Get a percentile of all recorded values
+   * @param quantile The percentile, between 0 and 1
+   * @return The highest value of the bucket the percentile falls into, at most the maximum value
+   */
+  public long getPercentile(double quantile)
+  {
+    long total = count.get();
+    if (total == 0) return 0;
+
+    long rank = Math.max((long) Math.ceil(quantile * total), 1);
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++)
+    {
+      seen += buckets.get(bucket);
+      if (seen >= rank) return Math.min(highestOf(bucket), max.get());
+    }
+    return max.get();
+  }
+
+  private static int bucketOf(long value)
+  {
+    if (value < SUB_BUCKETS) return (int) value;
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS * (exponent - SUB_BITS + 1) + sub;
+  }
+
+  private static long highestOf(int bucket)
+  {
+    if (bucket < SUB_BUCKETS) return bucket;
+    int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+    return lowest + (1L << (exponent - SUB_BITS)) - 1;
+  }
+
+  public long getCount()
+  {
+    return count.get();
+  }
+
+  public long getSum()
+  {
+    return sum.get();
+  }
+
+  public long getMax()
+  {
+    return max.get();
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  public String getHelp()
+  {
+    return help;
+  }
+}
@@ -0,0 +1,107 @@
+package com.github.fahjulian.tetris.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+/**
+ * The metrics of the running game. Recording is cheap enough for every frame; reading them is
+ * done through JMX ({@link #register()}) or a Prometheus endpoint ({@link PrometheusServer}).
+ */
+public class Metrics
+{
+  public static final Histogram UPDATE;
+  public static final Histogram RENDER;
+  public static final Histogram PAINT_GRID;
+  public static final Histogram PAINT_HUD;
+  public static final Histogram SLEEP_OVERSHOOT;
+  public static final Histogram DATABASE_WRITE;
+  public static final Histogram DATABASE_READ;
+  public static final Histogram INPUT_LATENCY;
+  public static final Histogram MATCH_TICK;
+  public static final Histogram SESSION_LATENESS;
+  public static final Histogram SNAPSHOT_WRITE;
+  public static final Histogram FIRST_FRAME;
+  public static final Counter FRAMES;
+  public static final Counter MISSED_FRAMES;
+  public static final Counter UPDATES;
+  public static final Counter PIECES_LOCKED;
+  public static final Counter LINES_CLEARED;
+  public static final Counter INPUTS_DROPPED;
+  public static final Counter MATCHES;
+  public static final Counter LATE_TICKS;
+  public static final Counter BYTES_SENT;
+  public static final Counter MISSED_DEADLINES;
+
+  private static final List<Histogram> histograms;
+  private static final List<Counter> counters;
+  private static boolean registered;
+
+  static
+  {
+    UPDATE = new Histogram("tetris_update_seconds", "Time to simulate one fixed update");
+    RENDER = new Histogram("tetris_render_seconds", "Time to render one frame on the game thread");
+    PAINT_GRID = new Histogram("tetris_paint_grid_seconds", "Time to paint the grid");
+    PAINT_HUD = new Histogram("tetris_paint_hud_seconds", "Time to paint the HUD");
+    SLEEP_OVERSHOOT = new Histogram("tetris_sleep_overshoot_seconds", "Time the frame pacer woke up too late");
+    DATABASE_WRITE = new Histogram("tetris_database_write_seconds", "Time to write one batch to the database");
+    DATABASE_READ = new Histogram("tetris_database_read_seconds", "Time to read from the database");
+    INPUT_LATENCY = new Histogram("tetris_input_latency_seconds", "Time from a key event to the first frame showing it");
+    MATCH_TICK = new Histogram("tetris_match_tick_seconds", "Time to simulate and send one tick of a multiplayer match");
+    SESSION_LATENESS = new Histogram("tetris_session_lateness_seconds", "Time a hosted session's tick started after it was due");
+    SNAPSHOT_WRITE = new Histogram("tetris_snapshot_write_seconds", "Time to save the game to the snapshot file");
+    FIRST_FRAME = new Histogram("tetris_time_to_first_frame_seconds", "Time from the start of the JVM to the first rendered frame");
+    FRAMES = new Counter("tetris_frames_total", "Frames rendered");
+    MISSED_FRAMES = new Counter("tetris_missed_frames_total", "Frames skipped because the game loop fell behind");
+    UPDATES = new Counter("tetris_updates_total", "Fixed updates simulated");
+    PIECES_LOCKED = new Counter("tetris_pieces_locked_total", "Tiles locked on the board");
+    LINES_CLEARED = new Counter("tetris_lines_cleared_total", "Rows cleared");
+    INPUTS_DROPPED = new Counter("tetris_inputs_dropped_total", "Key events dropped because the input queue was full");
+    MATCHES = new Counter("tetris_matches_total", "Multiplayer matches started");
+    LATE_TICKS = new Counter("tetris_late_ticks_total", "Match ticks started more than one tick late");
+    BYTES_SENT = new Counter("tetris_bytes_sent_total", "Bytes sent to multiplayer clients");
+    MISSED_DEADLINES = new Counter("tetris_missed_deadlines_total", "Hosted session ticks that ended after the next tick was due");
+
+    histograms = Collections.unmodifiableList(Arrays.asList(UPDATE, RENDER, PAINT_GRID, PAINT_HUD, SLEEP_OVERSHOOT,
+        DATABASE_WRITE, DATABASE_READ, INPUT_LATENCY, MATCH_TICK, 
+        SESSION_LATENESS, SNAPSHOT_WRITE, FIRST_FRAME));
+    counters = Collections.unmodifiableList(Arrays.asList(FRAMES, MISSED_FRAMES, UPDATES, PIECES_LOCKED, 
+        LINES_CLEARED, INPUTS_DROPPED, MATCHES, LATE_TICKS, BYTES_SENT, 
+        MISSED_DEADLINES));
+  }
+
+  private Metrics() {}
+
+  /**
+   * Register the metrics as an MBean named {@code com.github.fahjulian.tetris:type=Metrics}, so
+   * they can be watched in e.g. JConsole. Does nothing if they are registered already.
+   */
+  public static synchronized void register()
+  {
+    if (registered) return;
+
+    try
+    {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(),
+          new ObjectName("com.github.fahjulian.tetris:type=Metrics"));
+      registered = true;
+    }
+    catch (Exception e)
+    {
+      e.printStackTrace();
+    }
+  }
+
+  public static List<Histogram> getHistograms()
+  {
+    return histograms;
+  }
+
+  public static List<Counter> getCounters()
+  {
+    return counters;
+  }
+}
@@ -0,0 +1,105 @@
+package com.github.fahjulian.tetris.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Exposes all {@link Metrics} as read-only MBean attributes: one per counter, and the count, p50,
+ * p99 and maximum in microseconds per histogram
+ */
+class MetricsMBean implements DynamicMBean
+{
+  private final MBeanInfo info;
+
+  MetricsMBean()
+  {
+    List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+    for (Counter counter: Metrics.getCounters())
+      attributes.add(new MBeanAttributeInfo(counter.getName(), "long", counter.getHelp(), true, false, false));
+    for (Histogram histogram: Metrics.getHistograms())
+    {
+      String name = histogram.getName();
+      attributes.add(new MBeanAttributeInfo(name + "_count", "long", histogram.getHelp() + ", count", true, false, false));
+      attributes.add(new MBeanAttributeInfo(name + "_p50_us", "double", histogram.getHelp() + ", median in µs", true, false, false));
+      attributes.add(new MBeanAttributeInfo(name + "_p99_us", "double", histogram.getHelp() + ", 99th percentile in µs", true, false, false));
+      attributes.add(new MBeanAttributeInfo(name + "_max_us", "double", histogram.getHelp() + ", maximum in µs", true, false, false));
+    }
+
+    this.info = new MBeanInfo(Metrics.class.getName(), "Metrics of the running game",
+        attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[0], null);
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException
+  {
+    for (Counter counter: Metrics.getCounters())
+      if (counter.getName().equals(attribute)) return counter.get();
+
+    for (Histogram histogram: Metrics.getHistograms())
+    {
+      String name = histogram.getName();
+      if (!attribute.startsWith(name)) continue;
+      String suffix = attribute.substring(name.length());
+      if (suffix.equals("_count")) return histogram.getCount();
+      if (suffix.equals("_p50_us")) return histogram.getPercentile(0.5) / 1e3;
+      if (suffix.equals("_p99_us")) return histogram.getPercentile(0.99) / 1e3;
+      if (suffix.equals("_max_us")) return histogram.getMax() / 1e3;
+    }
+
+    throw new AttributeNotFoundException(attribute);
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] attributes)
+  {
+    AttributeList list = new AttributeList();
+    for (String attribute: attributes)
+    {
+      try
+      {
+        list.add(new Attribute(attribute, getAttribute(attribute)));
+      }
+      catch (AttributeNotFoundException e)
+      {
+        // Left out of the list, as the interface asks for
+      }
+    }
+    return list;
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+  {
+    throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes)
+  {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature)
+      throws MBeanException, ReflectionException
+  {
+    // There are no operations
+    throw new ReflectionException(new NoSuchMethodException(actionName));
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo()
+  {
+    return info;
+  }
+}
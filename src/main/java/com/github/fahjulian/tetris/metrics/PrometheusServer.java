@@ -0,0 +1,91 @@
+package com.github.fahjulian.tetris.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+
+/**
+ * Serves all {@link Metrics} in the Prometheus text format on {@code /metrics}, on the loopback
+ * interface only. Histograms are exported as summaries with their p50 and p99 in seconds.
+ */
+public class PrometheusServer
+{
+  private static final Charset UTF_8;
+  private static final double[] QUANTILES;
+
+  private final HttpServer server;
+
+  static
+  {
+    UTF_8 = Charset.forName("UTF-8");
+    QUANTILES = new double[] { 0.5, 0.99 };
+  }
+
+  /**
+   * Start serving the metrics
+   * @param port The local port to listen on
+   * @throws IOException If the port cannot be bound
+   */
+  public PrometheusServer(int port) throws IOException
+  {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), port), 0);
+    server.createContext("/metrics", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException
+      {
+        byte[] body = scrape().getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * Stop serving the metrics
+   */
+  public void stop()
+  {
+    server.stop(0);
+  }
+
+  /**
+   * Write all metrics in the Prometheus text format
+   * @return The metrics
+   */
+  public static String scrape()
+  {
+    StringBuilder out = new StringBuilder();
+    for (Counter counter: Metrics.getCounters())
+    {
+      out.append("# HELP ").append(counter.getName()).append(' ').append(counter.getHelp()).append('\n');
+      out.append("# TYPE ").append(counter.getName()).append(" counter\n");
+      out.append(counter.getName()).append(' ').append(counter.get()).append('\n');
+    }
+
+    for (Histogram histogram: Metrics.getHistograms())
+    {
+      String name = histogram.getName();
+      out.append("# HELP ").append(name).append(' ').append(histogram.getHelp()).append('\n');
+      out.append("# TYPE ").append(name).append(" summary\n");
+      for (double quantile: QUANTILES)
+        out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+            .append(histogram.getPercentile(quantile) / 1e9).append('\n');
+      out.append(name).append("_sum ").append(histogram.getSum() / 1e9).append('\n');
+      out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+      out.append("# HELP ").append(name).append("_max ").append(histogram.getHelp()).append(", maximum\n");
+      out.append("# TYPE ").append(name).append("_max gauge\n");
+      out.append(name).append("_max ").append(histogram.getMax() / 1e9).append('\n');
+    }
+    return out.toString();
+  }
+}
@@ -0,0 +1,159 @@
+package com.github.fahjulian.tetris.net;
+
+import com.github.fahjulian.tetris.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A client connected to a {@code Server}. Reading and writing the channel is only done by the
+ * selector thread; the frames to write are queued from the worker threads running the matches.
+ */
+class Connection
+{
+  private final SocketChannel channel;
+  private final SelectionKey key;
+  private final ByteBuffer readBuffer;
+  private final ConcurrentLinkedQueue<ByteBuffer> writeQueue;
+  /** The bytes queued but not written yet */
+  private final AtomicInteger queuedBytes;
+  /** Whether this connection is waiting to be flushed by the selector thread */
+  private final AtomicBoolean flushPending;
+  /** The frame being written, only touched by the selector thread */
+  private ByteBuffer writing;
+
+  private volatile Match match;
+  private volatile int player;
+  private volatile boolean closed;
+
+  /**
+   * Constructs a new connection
+   * @param channel The accepted, non-blocking channel
+   * @param key The key of the channel with the server's selector
+   */
+  Connection(SocketChannel channel, SelectionKey key)
+  {
+    this.channel = channel;
+    this.key = key;
+    this.readBuffer = ByteBuffer.allocate(256);
+    this.writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+    this.queuedBytes = new AtomicInteger();
+    this.flushPending = new AtomicBoolean();
+  }
+
+  /**
+   * Read what the client sent into {@link #getReadBuffer()}. Only called by the selector thread.
+   * @return Whether the client is still connected
+   * @throws IOException If reading fails
+   */
+  boolean read() throws IOException
+  {
+    return channel.read(readBuffer) >= 0;
+  }
+
+  /**
+   * Queue a frame to be written by the selector thread
+   * @param frame The frame, not changed afterwards
+   * @param maxQueuedBytes The amount of unwritten bytes after which a client is considered too slow
+   * @return Whether the connection needs to be flushed, i.e. was not pending to be flushed already
+   */
+  boolean enqueue(ByteBuffer frame, int maxQueuedBytes)
+  {
+    if (closed) return false;
+    if (queuedBytes.addAndGet(frame.remaining()) > maxQueuedBytes)
+    {
+      // Rather drop a client that cannot keep up than buffer without bound
+      closed = true;
+      return flushPending.compareAndSet(false, true);
+    }
+
+    writeQueue.offer(frame);
+    return flushPending.compareAndSet(false, true);
+  }
+
+  /**
+   * Write as much of the queued frames as the channel takes, and wait for the channel to become
+   * writable if that was not all of them. Only called by the selector thread.
+   * @throws IOException If writing fails
+   */
+  void flush() throws IOException
+  {
+    flushPending.set(false);
+    while (true)
+    {
+      if (writing == null)
+      {
+        writing = writeQueue.poll();
+        if (writing == null) break;
+      }
+
+      int written = channel.write(writing);
+      queuedBytes.addAndGet(-written);
+      Metrics.BYTES_SENT.add(written);
+      if (writing.hasRemaining())
+      {
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return;
+      }
+      writing = null;
+    }
+    key.interestOps(SelectionKey.OP_READ);
+  }
+
+  /**
+   * Close the channel. Only called by the selector thread.
+   */
+  void close()
+  {
+    closed = true;
+    key.cancel();
+    try
+    {
+      channel.close();
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace();
+    }
+    writeQueue.clear();
+  }
+
+  /**
+   * Take part in a match, or leave it
+   * @param match The match, or {@code null} once it is over
+   * @param player The index of this client's player in the match
+   */
+  void setMatch(Match match, int player)
+  {
+    this.player = player;
+    this.match = match;
+  }
+
+  Match getMatch()
+  {
+    return match;
+  }
+
+  int getPlayer()
+  {
+    return player;
+  }
+
+  ByteBuffer getReadBuffer()
+  {
+    return readBuffer;
+  }
+
+  /**
+   * @return Whether the connection is closed, or about to be closed by the selector thread
+   */
+  boolean isClosed()
+  {
+    return closed;
+  }
+}
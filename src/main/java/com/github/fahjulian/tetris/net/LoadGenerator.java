@@ -0,0 +1,268 @@
+package com.github.fahjulian.tetris.net;
+
+import com.github.fahjulian.tetris.Grid;
+import com.github.fahjulian.tetris.engine.Input;
+import com.github.fahjulian.tetris.metrics.Metrics;
+import com.github.fahjulian.tetris.util.SplitMixRandom;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Finds how many concurrent matches a {@code Server} sustains at its tick rate. Adds matches of
+ * simulated clients over loopback step by step, every client sending random inputs and applying
+ * the states it receives, until the clients no longer receive a state every tick or the server
+ * starts more than 1% of its ticks late. Late ticks are only measured for a server started in the
+ * same process. The clients all run on one thread, which can become the limit before the server
+ * does.
+ */
+public class LoadGenerator
+{
+  private static final Input[] INPUTS;
+  /** The chance of a client sending an input after a state, about 10 inputs per second */
+  private static final int INPUT_ONE_IN;
+  private static final long WARMUP_NANOS;
+
+  private final InetSocketAddress address;
+  private final int players;
+  private final Selector selector;
+  private final List<Client> clients;
+  private final SplitMixRandom random;
+  private long states;
+  private long ends;
+
+  static
+  {
+    INPUTS = new Input[] { Input.LEFT, Input.RIGHT, Input.ROTATE, Input.DOWN };
+    INPUT_ONE_IN = 6;
+    WARMUP_NANOS = 1000000000L;
+  }
+
+  /**
+   * Constructs a new load generator without any clients
+   * @param address The address of the server
+   * @param players The amount of players of every match
+   * @throws IOException If the selector cannot be opened
+   */
+  public LoadGenerator(InetSocketAddress address, int players) throws IOException
+  {
+    this.address = address;
+    this.players = players;
+    this.selector = Selector.open();
+    this.clients = new ArrayList<Client>();
+    this.random = new SplitMixRandom(42);
+  }
+
+  /**
+   * Connect the clients of more matches, each of which joins a match right away
+   * @param matches The amount of matches to add
+   * @throws IOException If a client cannot connect
+   */
+  public void addMatches(int matches) throws IOException
+  {
+    for (int i = 0; i < matches * players; i++)
+    {
+      SocketChannel channel = SocketChannel.open(address);
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      channel.configureBlocking(false);
+      Client client = new Client(channel);
+      channel.register(selector, SelectionKey.OP_READ, client);
+      clients.add(client);
+      client.join();
+    }
+  }
+
+  /**
+   * Let the clients play for a while
+   * @param nanos How long to play
+   * @throws IOException If a client fails to read or write
+   */
+  public void run(long nanos) throws IOException
+  {
+    long end = System.nanoTime() + nanos;
+    long remaining;
+    while ((remaining = end - System.nanoTime()) > 0)
+    {
+      selector.select(Math.max(remaining / 1000000, 1));
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext())
+      {
+        SelectionKey key = keys.next();
+        keys.remove();
+        if (key.isReadable()) ((Client) key.attachment()).read();
+      }
+    }
+  }
+
+  public void close() throws IOException
+  {
+    for (Client client: clients)
+      client.channel.close();
+    selector.close();
+  }
+
+  /**
+   * @return The amount of states received by all clients so far
+   */
+  public long getStates()
+  {
+    return states;
+  }
+
+  /**
+   * @return The amount of matches the clients saw end so far
+   */
+  public long getEnds()
+  {
+    return ends;
+  }
+
+  public int getClients()
+  {
+    return clients.size();
+  }
+
+  /**
+   * A simulated player
+   */
+  private class Client
+  {
+    private final SocketChannel channel;
+    private final ByteBuffer writeBuffer;
+    private ByteBuffer readBuffer;
+    private MatchState match;
+
+    Client(SocketChannel channel)
+    {
+      this.channel = channel;
+      this.readBuffer = ByteBuffer.allocate(4096);
+      this.writeBuffer = ByteBuffer.allocate(64);
+    }
+
+    void join() throws IOException
+    {
+      Protocol.putJoin(writeBuffer, players);
+      write();
+    }
+
+    void read() throws IOException
+    {
+      if (channel.read(readBuffer) < 0) throw new IOException("The server closed the connection");
+
+      readBuffer.flip();
+      int length;
+      while ((length = Protocol.nextFrame(readBuffer)) >= 0)
+      {
+        int end = readBuffer.position() + length;
+        byte type = readBuffer.get();
+        if (type == Protocol.START) match = new MatchState(readBuffer);
+        else if (type == Protocol.STATE && match != null)
+        {
+          match.apply(readBuffer);
+          states++;
+          if (!match.isGameOver(match.getPlayer()) && random.nextInt(INPUT_ONE_IN) == 0)
+            Protocol.putInput(writeBuffer, INPUTS[random.nextInt(INPUTS.length)]);
+        }
+        else if (type == Protocol.END)
+        {
+          match = null;
+          ends++;
+          Protocol.putJoin(writeBuffer, players);
+        }
+        readBuffer.position(end);
+      }
+      readBuffer.compact();
+      if (!readBuffer.hasRemaining())
+      {
+        // A frame larger than the buffer, e.g. the first state of a match on large boards
+        ByteBuffer larger = ByteBuffer.allocate(Math.min(readBuffer.capacity() * 2, Protocol.MAX_FRAME_SIZE));
+        readBuffer.flip();
+        readBuffer = larger.put(readBuffer);
+      }
+      write();
+    }
+
+    /**
+     * Write the queued messages, keeping what the channel did not take for the next time
+     */
+    private void write() throws IOException
+    {
+      writeBuffer.flip();
+      channel.write(writeBuffer);
+      writeBuffer.compact();
+    }
+  }
+
+  /**
+   * Ramp up the load on a server until it can no longer keep up
+   * @param args [players per match] [matches added per step] [maximum matches] [seconds per step]
+   *     [worker threads of the server] [port of a running server, or none to start one]
+   */
+  public static void main(String[] args) throws IOException, InterruptedException
+  {
+    int players = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+    int step = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+    int maxMatches = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+    int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+    int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+    Server server = null;
+    int port;
+    if (args.length > 5) port = Integer.parseInt(args[5]);
+    else
+    {
+      server = new Server(0, Grid.DEFAULT_ROWS, Grid.DEFAULT_COLS, threads);
+      server.start();
+      port = server.getPort();
+    }
+
+    // The metrics of a server in another process cannot be read, only the clients are measured then
+    boolean local = server != null;
+    if (!local) System.out.println("Server runs in another process, late ticks are not measured");
+
+    LoadGenerator generator = new LoadGenerator(new InetSocketAddress(InetAddress.getByName(null), port), players);
+    int sustained = 0;
+    try
+    {
+      for (int matches = step; matches <= maxMatches; matches += step)
+      {
+        generator.addMatches(step);
+        generator.run(WARMUP_NANOS);
+
+        long states = generator.getStates(), ends = generator.getEnds();
+        long lateTicks = Metrics.LATE_TICKS.get(), bytes = Metrics.BYTES_SENT.get();
+        long start = System.nanoTime();
+        generator.run(seconds * 1000000000L);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        double rate = (generator.getStates() - states) / elapsed / generator.getClients();
+        double lateShare = (Metrics.LATE_TICKS.get() - lateTicks) / (elapsed * Server.TICK_RATE * matches);
+        if (local)
+          System.out.printf("%5d matches: %5.1f states/s per client, %4.1f%% late ticks, tick p99 %.3fms, " +
+              "%.2f MB/s sent, %d matches ended%n", matches, rate, lateShare * 100,
+              Metrics.MATCH_TICK.getPercentile(0.99) / 1e6, (Metrics.BYTES_SENT.get() - bytes) / elapsed / 1e6,
+              generator.getEnds() - ends);
+        else
+          System.out.printf("%5d matches: %5.1f states/s per client, %d matches ended%n", matches, rate,
+              generator.getEnds() - ends);
+        if (rate < Server.TICK_RATE * 0.95 || (local && lateShare > 0.01)) break;
+        sustained = matches;
+      }
+    }
+    finally
+    {
+      generator.close();
+      if (server != null) server.stop();
+    }
+    System.out.printf("Sustained %d concurrent matches of %d players at %dHz%n", sustained, players, Server.TICK_RATE);
+  }
+}
@@ -0,0 +1,340 @@
+package com.github.fahjulian.tetris.net;
+
+import com.github.fahjulian.tetris.engine.Board;
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.engine.Input;
+import com.github.fahjulian.tetris.gameobject.Tile;
+import com.github.fahjulian.tetris.metrics.Metrics;
+import com.github.fahjulian.tetris.util.KeyEventQueue;
+import com.github.fahjulian.tetris.util.SplitMixRandom;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A match of two or more players on the server, one {@code Engine} per player. Every tick applies
+ * the inputs received since the last tick, advances all games by the same amount of time, sends
+ * the garbage of cleared rows to the opponents and sends the changes to all players.
+ * <p>
+ * Ticks run on a worker pool at a fixed rate and never overlap; inputs arrive through one
+ * {@code KeyEventQueue} per player from the selector thread.
+ */
+class Match implements Runnable
+{
+  private static final Input[] INPUTS;
+  /** The garbage rows sent for clearing 0 to 4 rows at once */
+  private static final int[] GARBAGE;
+  private static final int INPUT_CAPACITY;
+
+  private final Server server;
+  private final Connection[] players;
+  private final Engine[] engines;
+  private final KeyEventQueue[] inputs;
+  private final int cols;
+  private final long seed;
+  private final SplitMixRandom random;
+  /** The garbage rows every player receives at the end of the tick */
+  private final int[] pendingGarbage;
+  /** The opponent every player sends garbage to next, going round the other players */
+  private final int[] targets;
+  private final boolean[] alive;
+  private final ByteBuffer scratch;
+
+  // The state last sent of every player
+  private final int[] sentTiles;
+  private final int[] sentRotations;
+  private final int[] sentCols;
+  private final int[] sentRows;
+  private final int[] sentScores;
+
+  private int tick;
+  private long startNanos;
+  private volatile boolean over;
+  private volatile ScheduledFuture<?> future;
+
+  static
+  {
+    INPUTS = Input.values();
+    GARBAGE = new int[] { 0, 0, 1, 2, 4 };
+    INPUT_CAPACITY = 64;
+  }
+
+  /**
+   * Constructs a new match
+   * @param server The server sending the frames
+   * @param players The connections of the players
+   * @param rows Amount of rows of the boards
+   * @param cols Amount of columns of the boards
+   * @param seed Seed of the tile sequence of every player and of the garbage
+   */
+  Match(Server server, Connection[] players, int rows, int cols, long seed)
+  {
+    this.server = server;
+    this.players = players;
+    this.engines = new Engine[players.length];
+    this.inputs = new KeyEventQueue[players.length];
+    this.cols = cols;
+    this.seed = seed;
+    this.random = new SplitMixRandom(seed);
+    this.pendingGarbage = new int[players.length];
+    this.targets = new int[players.length];
+    this.alive = new boolean[players.length];
+    this.scratch = ByteBuffer.allocate(Protocol.getMaxStateSize(rows, cols, players.length));
+    this.sentTiles = new int[players.length];
+    this.sentRotations = new int[players.length];
+    this.sentCols = new int[players.length];
+    this.sentRows = new int[players.length];
+    this.sentScores = new int[players.length];
+
+    for (int player = 0; player < players.length; player++)
+    {
+      // Every player gets the same tiles
+      engines[player] = new Engine(rows, cols, seed);
+      engines[player].getBoard().clearDamage();
+      engines[player].setLockListener(new GarbageSender(player));
+      inputs[player] = new KeyEventQueue(INPUT_CAPACITY);
+      targets[player] = player;
+      alive[player] = true;
+      sentTiles[player] = -1;
+    }
+  }
+
+  /**
+   * Tell the players the match started and start ticking
+   * @param workers The pool to run the ticks on
+   * @param tickNanos The time between two ticks
+   */
+  void start(ScheduledExecutorService workers, long tickNanos)
+  {
+    Board board = engines[0].getBoard();
+    for (int player = 0; player < players.length; player++)
+    {
+      ByteBuffer frame = ByteBuffer.allocate(2 + 1 + 14);
+      int start = Protocol.beginFrame(frame, Protocol.START);
+      frame.put((byte) players.length);
+      frame.put((byte) player);
+      frame.putShort((short) board.getRows());
+      frame.putShort((short) board.getCols());
+      frame.putLong(seed);
+      Protocol.endFrame(frame, start);
+      frame.flip();
+      players[player].setMatch(this, player);
+      server.send(players[player], frame);
+    }
+    server.flush();
+
+    startNanos = System.nanoTime();
+    future = workers.scheduleAtFixedRate(this, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    Metrics.MATCHES.increment();
+  }
+
+  @Override
+  public void run()
+  {
+    if (over)
+    {
+      // Ended before the future was known
+      future.cancel(false);
+      return;
+    }
+
+    long start = System.nanoTime();
+    if (start - startNanos > (tick + 2) * server.getTickNanos()) Metrics.LATE_TICKS.increment();
+
+    // Spread the ticks of a second evenly, e.g. 16 and 17 ticks at 60Hz
+    int ticks = (int) ((tick + 1L) * Engine.TICKS_PER_SECOND / Server.TICK_RATE -
+        (long) tick * Engine.TICKS_PER_SECOND / Server.TICK_RATE);
+    for (int player = 0; player < players.length; player++)
+    {
+      Engine engine = engines[player];
+      KeyEventQueue queue = inputs[player];
+      while (queue.poll())
+        engine.step(INPUTS[queue.getKeyCode()], 0);
+      engine.step(Input.NONE, ticks);
+    }
+
+    for (int player = 0; player < players.length; player++)
+    {
+      if (pendingGarbage[player] > 0)
+        engines[player].addGarbage(pendingGarbage[player], random.nextInt(cols));
+      pendingGarbage[player] = 0;
+    }
+
+    ByteBuffer frame = writeState();
+    for (int player = 0; player < players.length; player++)
+      server.send(players[player], frame.duplicate());
+
+    int left = 0, winner = Protocol.NO_WINNER;
+    for (int player = 0; player < players.length; player++)
+      if (alive[player])
+      {
+        left++;
+        winner = player;
+      }
+    if (left <= 1) end(left == 1 ? winner : Protocol.NO_WINNER);
+
+    server.flush();
+    tick++;
+    Metrics.MATCH_TICK.record(System.nanoTime() - start);
+  }
+
+  /**
+   * Write the changes of all players since the last tick into a {@link Protocol#STATE} frame
+   * @return The frame, ready to be read
+   */
+  private ByteBuffer writeState()
+  {
+    ByteBuffer out = scratch;
+    out.clear();
+    int start = Protocol.beginFrame(out, Protocol.STATE);
+    out.putInt(tick);
+    int countPosition = out.position();
+    out.put((byte) 0);
+
+    int count = 0;
+    for (int player = 0; player < players.length; player++)
+    {
+      Engine engine = engines[player];
+      Board board = engine.getBoard();
+      int flags = 0;
+      if (alive[player] && (engine.isGameOver() || players[player].isClosed()))
+      {
+        alive[player] = false;
+        flags |= Protocol.CHANGED_GAME_OVER;
+      }
+      if (alive[player] && (engine.getCurrentTile().ordinal() != sentTiles[player] ||
+          engine.getTileRotation() != sentRotations[player] || engine.getTileCol() != sentCols[player] ||
+          engine.getTileRow() != sentRows[player]))
+        flags |= Protocol.CHANGED_TILE;
+      if (engine.getScore() != sentScores[player]) flags |= Protocol.CHANGED_SCORE;
+      if (board.getDamageTop() <= board.getDamageBottom()) flags |= Protocol.CHANGED_ROWS;
+      if (flags == 0) continue;
+
+      count++;
+      out.put((byte) player);
+      out.put((byte) flags);
+      if ((flags & Protocol.CHANGED_TILE) != 0)
+      {
+        sentTiles[player] = engine.getCurrentTile().ordinal();
+        sentRotations[player] = engine.getTileRotation();
+        sentCols[player] = engine.getTileCol();
+        sentRows[player] = engine.getTileRow();
+        out.put((byte) sentTiles[player]);
+        out.put((byte) sentRotations[player]);
+        out.putShort((short) sentCols[player]);
+        out.putShort((short) sentRows[player]);
+      }
+      if ((flags & Protocol.CHANGED_SCORE) != 0)
+      {
+        sentScores[player] = engine.getScore();
+        out.putInt(sentScores[player]);
+      }
+      if ((flags & Protocol.CHANGED_ROWS) != 0)
+      {
+        writeRows(out, board, board.getDamageTop(), board.getDamageBottom());
+        board.clearDamage();
+      }
+    }
+
+    out.put(countPosition, (byte) count);
+    Protocol.endFrame(out, start);
+    out.flip();
+    // Every player gets a view of the same copy, the scratch buffer is reused next tick
+    ByteBuffer frame = ByteBuffer.allocate(out.remaining());
+    frame.put(out);
+    frame.flip();
+    return frame;
+  }
+
+  /**
+   * Write rows of a board as in a {@link Protocol#STATE}
+   * @param out The buffer to write to
+   * @param board The board
+   * @param top The topmost row
+   * @param bottom The bottommost row
+   */
+  static void writeRows(ByteBuffer out, Board board, int top, int bottom)
+  {
+    out.putShort((short) top);
+    out.putShort((short) (bottom - top + 1));
+    for (int row = top; row <= bottom; row++)
+      for (int col = 0; col < board.getCols(); col += 2)
+      {
+        int cells = cell(board.getTile(row, col));
+        if (col + 1 < board.getCols()) cells |= cell(board.getTile(row, col + 1)) << 4;
+        out.put((byte) cells);
+      }
+  }
+
+  private static int cell(Tile tile)
+  {
+    return tile == null ? 0 : tile.ordinal() + 1;
+  }
+
+  /**
+   * Stop ticking and tell the players who won
+   * @param winner The index of the winner, or {@link Protocol#NO_WINNER}
+   */
+  private void end(int winner)
+  {
+    over = true;
+    if (future != null) future.cancel(false);
+
+    ByteBuffer frame = ByteBuffer.allocate(2 + 1 + 1);
+    int start = Protocol.beginFrame(frame, Protocol.END);
+    frame.put((byte) winner);
+    Protocol.endFrame(frame, start);
+    frame.flip();
+    for (int player = 0; player < players.length; player++)
+    {
+      // Leave first, so the player can join the next match as soon as it read the end
+      players[player].setMatch(null, 0);
+      server.send(players[player], frame.duplicate());
+    }
+  }
+
+  /**
+   * Add an input of a player. Only called by the selector thread.
+   * @param player The index of the player
+   * @param input The ordinal of the input
+   * @return Whether the input was added, or dropped because the player sent too many
+   */
+  boolean offerInput(int player, int input)
+  {
+    if (input < 0 || input >= INPUTS.length) return true;
+    return inputs[player].offer(input, true, System.nanoTime());
+  }
+
+  /**
+   * Sends the garbage of the rows cleared by one player to the next opponent still playing
+   */
+  private class GarbageSender implements Engine.LockListener
+  {
+    private final int player;
+
+    GarbageSender(int player)
+    {
+      this.player = player;
+    }
+
+    @Override
+    public void onLock(int clearedRows)
+    {
+      int garbage = GARBAGE[Math.min(clearedRows, GARBAGE.length - 1)];
+      if (garbage == 0) return;
+
+      for (int i = 1; i < players.length; i++)
+      {
+        int target = (targets[player] + i) % players.length;
+        if (target != player && alive[target])
+        {
+          targets[player] = target;
+          pendingGarbage[target] += garbage;
+          return;
+        }
+      }
+    }
+  }
+}
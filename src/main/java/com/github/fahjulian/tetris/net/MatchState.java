@@ -0,0 +1,170 @@
+package com.github.fahjulian.tetris.net;
+
+import com.github.fahjulian.tetris.gameobject.Tile;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A client's copy of a match, built up from the {@link Protocol#STATE} messages of the server
+ */
+public class MatchState
+{
+  private static final Tile[] TILES;
+
+  private final int players;
+  private final int player;
+  private final int rows;
+  private final int cols;
+  private final long seed;
+  /** The cells of every player's board, row by row */
+  private final Tile[][] cells;
+  private final Tile[] tiles;
+  private final int[] tileRotations;
+  private final int[] tileCols;
+  private final int[] tileRows;
+  private final int[] scores;
+  private final boolean[] gameOver;
+  private int tick;
+
+  static
+  {
+    TILES = Tile.values();
+  }
+
+  /**
+   * Constructs a new state from the body of a {@link Protocol#START} message
+   * @param start The body, after its type
+   */
+  public MatchState(ByteBuffer start)
+  {
+    this.players = start.get() & 0xff;
+    this.player = start.get() & 0xff;
+    this.rows = start.getShort() & 0xffff;
+    this.cols = start.getShort() & 0xffff;
+    this.seed = start.getLong();
+    this.cells = new Tile[players][rows * cols];
+    this.tiles = new Tile[players];
+    this.tileRotations = new int[players];
+    this.tileCols = new int[players];
+    this.tileRows = new int[players];
+    this.scores = new int[players];
+    this.gameOver = new boolean[players];
+    this.tick = -1;
+  }
+
+  /**
+   * Apply the changes of a tick
+   * @param state The body of a {@link Protocol#STATE} message, after its type
+   */
+  public void apply(ByteBuffer state)
+  {
+    tick = state.getInt();
+    int count = state.get() & 0xff;
+    for (int i = 0; i < count; i++)
+    {
+      int p = state.get() & 0xff;
+      int flags = state.get() & 0xff;
+      if ((flags & Protocol.CHANGED_TILE) != 0)
+      {
+        tiles[p] = TILES[state.get() & 0xff];
+        tileRotations[p] = state.get() & 0xff;
+        tileCols[p] = state.getShort();
+        tileRows[p] = state.getShort();
+      }
+      if ((flags & Protocol.CHANGED_SCORE) != 0) scores[p] = state.getInt();
+      if ((flags & Protocol.CHANGED_ROWS) != 0)
+      {
+        int top = state.getShort() & 0xffff;
+        int changedRows = state.getShort() & 0xffff;
+        Tile[] board = cells[p];
+        for (int row = top; row < top + changedRows; row++)
+          for (int col = 0; col < cols; col += 2)
+          {
+            int packed = state.get() & 0xff;
+            board[row * cols + col] = cell(packed & 0xf);
+            if (col + 1 < cols) board[row * cols + col + 1] = cell(packed >>> 4);
+          }
+      }
+      if ((flags & Protocol.CHANGED_GAME_OVER) != 0) gameOver[p] = true;
+    }
+  }
+
+  private static Tile cell(int value)
+  {
+    return value == 0 ? null : TILES[value - 1];
+  }
+
+  /**
+   * @return The amount of players of the match
+   */
+  public int getPlayers()
+  {
+    return players;
+  }
+
+  /**
+   * @return The index of this client's player
+   */
+  public int getPlayer()
+  {
+    return player;
+  }
+
+  public int getRows()
+  {
+    return rows;
+  }
+
+  public int getCols()
+  {
+    return cols;
+  }
+
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  /**
+   * @return The last applied tick, -1 before the first one
+   */
+  public int getTick()
+  {
+    return tick;
+  }
+
+  public Tile getTile(int player, int row, int col)
+  {
+    return cells[player][row * cols + col];
+  }
+
+  public Tile getCurrentTile(int player)
+  {
+    return tiles[player];
+  }
+
+  public int getTileRotation(int player)
+  {
+    return tileRotations[player];
+  }
+
+  public int getTileCol(int player)
+  {
+    return tileCols[player];
+  }
+
+  public int getTileRow(int player)
+  {
+    return tileRows[player];
+  }
+
+  public int getScore(int player)
+  {
+    return scores[player];
+  }
+
+  public boolean isGameOver(int player)
+  {
+    return gameOver[player];
+  }
+}
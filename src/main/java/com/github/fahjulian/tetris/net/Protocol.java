@@ -0,0 +1,158 @@
+package com.github.fahjulian.tetris.net;
+
+import com.github.fahjulian.tetris.engine.Input;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The messages between a multiplayer {@code Server} and its clients. Every message is a frame of
+ * an unsigned 16 bit length, followed by that many bytes: the type of the message and its body.
+ * <p>
+ * Clients send {@link #JOIN} to wait for a match and then {@link #INPUT} for every input. The
+ * server sends {@link #START} once a match is full, a {@link #STATE} every tick and {@link #END}
+ * once at most one player is left. A state only contains what changed since the previous one,
+ * see {@link MatchState} for how to apply it.
+ */
+public class Protocol
+{
+  /** Client: wait for a match. Body: the amount of players of the match (u8) */
+  public static final byte JOIN;
+  /** Client: apply an input. Body: the ordinal of the {@code Input} (u8) */
+  public static final byte INPUT;
+  /**
+   * Server: the match started. Body: amount of players (u8), index of the receiving player (u8),
+   * rows (u16), columns (u16), seed of the tile sequence (i64)
+   */
+  public static final byte START;
+  /**
+   * Server: one tick of the match. Body: the tick (i32), amount of changed players (u8), then
+   * every changed player (u8) with its {@code CHANGED_} flags (u8) and the changed values in the
+   * order of the flags
+   */
+  public static final byte STATE;
+  /** Server: the match is over. Body: the index of the winner (u8), {@link #NO_WINNER} if none */
+  public static final byte END;
+
+  /** The current tile moved. Tile ordinal (u8), rotation (u8), column (i16), row (i16) */
+  public static final int CHANGED_TILE;
+  /** The score changed. Score (i32) */
+  public static final int CHANGED_SCORE;
+  /**
+   * Rows of the board changed. Topmost row (u16), amount of rows (u16), then two cells per byte,
+   * row by row, every cell the {@code Tile} ordinal + 1 or 0 if empty, the first cell in the low
+   * nibble
+   */
+  public static final int CHANGED_ROWS;
+  /** The player lost or left */
+  public static final int CHANGED_GAME_OVER;
+
+  public static final int MIN_PLAYERS;
+  public static final int MAX_PLAYERS;
+  public static final int NO_WINNER;
+  /** The largest frame, including its length */
+  public static final int MAX_FRAME_SIZE;
+
+  static
+  {
+    JOIN = 1;
+    INPUT = 2;
+    START = 3;
+    STATE = 4;
+    END = 5;
+    CHANGED_TILE = 1;
+    CHANGED_SCORE = 2;
+    CHANGED_ROWS = 4;
+    CHANGED_GAME_OVER = 8;
+    MIN_PLAYERS = 2;
+    MAX_PLAYERS = 8;
+    NO_WINNER = 0xff;
+    MAX_FRAME_SIZE = 2 + 0xffff;
+  }
+
+  private Protocol() {}
+
+  /**
+   * Get the largest {@link #STATE} frame of a match, with every row of every board changed
+   * @param rows Amount of rows of the boards
+   * @param cols Amount of columns of the boards
+   * @param players Amount of players
+   * @return The size of the frame in bytes, including its length
+   */
+  public static int getMaxStateSize(int rows, int cols, int players)
+  {
+    return 2 + 1 + 4 + 1 + players * (2 + 6 + 4 + 4 + rows * getRowSize(cols));
+  }
+
+  /**
+   * Get the amount of bytes of a row of cells in a {@link #STATE}
+   * @param cols Amount of columns of the row
+   * @return The amount of bytes
+   */
+  public static int getRowSize(int cols)
+  {
+    return (cols + 1) / 2;
+  }
+
+  /**
+   * Start a frame. Its length is filled in by {@link #endFrame(ByteBuffer, int)}.
+   * @param buffer The buffer to write to
+   * @param type The type of the message
+   * @return The position of the frame, to be passed on to {@code endFrame}
+   */
+  public static int beginFrame(ByteBuffer buffer, byte type)
+  {
+    int start = buffer.position();
+    buffer.putShort((short) 0);
+    buffer.put(type);
+    return start;
+  }
+
+  /**
+   * Fill in the length of a frame written since {@link #beginFrame(ByteBuffer, byte)}
+   * @param buffer The buffer the frame was written to
+   * @param start The position of the frame
+   */
+  public static void endFrame(ByteBuffer buffer, int start)
+  {
+    buffer.putShort(start, (short) (buffer.position() - start - 2));
+  }
+
+  /**
+   * Write a {@link #JOIN} frame
+   * @param buffer The buffer to write to
+   * @param players The amount of players of the match to join
+   */
+  public static void putJoin(ByteBuffer buffer, int players)
+  {
+    int start = beginFrame(buffer, JOIN);
+    buffer.put((byte) players);
+    endFrame(buffer, start);
+  }
+
+  /**
+   * Write an {@link #INPUT} frame
+   * @param buffer The buffer to write to
+   * @param input The input
+   */
+  public static void putInput(ByteBuffer buffer, Input input)
+  {
+    int start = beginFrame(buffer, INPUT);
+    buffer.put((byte) input.ordinal());
+    endFrame(buffer, start);
+  }
+
+  /**
+   * Find the next complete frame in a buffer that is being read into
+   * @param buffer The buffer, flipped for reading
+   * @return The length of the frame's body, which starts at the position after reading the length,
+   *     or -1 if the buffer does not hold a complete frame yet, leaving the position unchanged
+   */
+  public static int nextFrame(ByteBuffer buffer)
+  {
+    if (buffer.remaining() < 2) return -1;
+    int length = buffer.getShort(buffer.position()) & 0xffff;
+    if (buffer.remaining() < 2 + length) return -1;
+    buffer.position(buffer.position() + 2);
+    return length;
+  }
+}
@@ -0,0 +1,296 @@
+package com.github.fahjulian.tetris.net;
+
+import com.github.fahjulian.tetris.Grid;
+import com.github.fahjulian.tetris.metrics.Metrics;
+import com.github.fahjulian.tetris.util.SplitMixRandom;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authoritative multiplayer server on the loopback interface. A single selector thread accepts
+ * clients, reads their messages and writes the frames queued for them; the matches tick on a pool
+ * of worker threads. See {@link Protocol} for the messages.
+ */
+public class Server implements Runnable
+{
+  /** The ticks of every match per second */
+  public static final int TICK_RATE;
+  /** The amount of unwritten bytes after which a client is dropped for being too slow */
+  private static final int MAX_QUEUED_BYTES;
+
+  private final int rows;
+  private final int cols;
+  private final long tickNanos;
+  private final ServerSocketChannel serverChannel;
+  private final Selector selector;
+  private final ScheduledThreadPoolExecutor workers;
+  /** The connections with queued frames, flushed by the selector thread */
+  private final ConcurrentLinkedQueue<Connection> pendingFlushes;
+  /** The connections waiting for a match of 0 to {@link Protocol#MAX_PLAYERS} players */
+  private final List<List<Connection>> lobbies;
+  private final SplitMixRandom seeds;
+  private final Thread thread;
+  private volatile boolean running;
+
+  static
+  {
+    TICK_RATE = 60;
+    MAX_QUEUED_BYTES = 1 << 20;
+  }
+
+  /**
+   * Constructs a new server, which is started with {@link #start()}
+   * @param port The local port to listen on, 0 for any free port
+   * @param rows Amount of rows of the boards
+   * @param cols Amount of columns of the boards
+   * @param workerThreads The amount of threads running the matches
+   * @throws IOException If the port cannot be bound
+   */
+  public Server(int port, int rows, int cols, int workerThreads) throws IOException
+  {
+    if (Protocol.getMaxStateSize(rows, cols, Protocol.MAX_PLAYERS) > Protocol.MAX_FRAME_SIZE)
+      throw new IllegalArgumentException("The boards are too large to be sent in one frame");
+
+    this.rows = rows;
+    this.cols = cols;
+    this.tickNanos = TimeUnit.SECONDS.toNanos(1) / TICK_RATE;
+    this.selector = Selector.open();
+    this.serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(InetAddress.getByName(null), port));
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+    this.workers = new ScheduledThreadPoolExecutor(workerThreads);
+    workers.setRemoveOnCancelPolicy(true);
+    this.pendingFlushes = new ConcurrentLinkedQueue<Connection>();
+    this.lobbies = new ArrayList<List<Connection>>();
+    for (int players = 0; players <= Protocol.MAX_PLAYERS; players++)
+      lobbies.add(new ArrayList<Connection>());
+    this.seeds = new SplitMixRandom(System.nanoTime());
+    this.thread = new Thread(this, "Server selector");
+  }
+
+  public void start()
+  {
+    running = true;
+    thread.start();
+  }
+
+  /**
+   * Stop the server and wait for the selector thread to close all connections
+   * @throws InterruptedException If interrupted while waiting
+   */
+  public void stop() throws InterruptedException
+  {
+    running = false;
+    selector.wakeup();
+    thread.join();
+    workers.shutdownNow();
+  }
+
+  @Override
+  public void run()
+  {
+    try
+    {
+      while (running)
+      {
+        selector.select();
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext())
+        {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) continue;
+
+          if (key.isAcceptable()) accept();
+          else
+          {
+            Connection connection = (Connection) key.attachment();
+            try
+            {
+              if (key.isReadable() && !read(connection)) close(connection);
+              else if (key.isValid() && key.isWritable()) connection.flush();
+            }
+            catch (IOException e)
+            {
+              // The client went away
+              close(connection);
+            }
+          }
+        }
+
+        Connection connection;
+        while ((connection = pendingFlushes.poll()) != null)
+        {
+          try
+          {
+            if (connection.isClosed()) close(connection);
+            else connection.flush();
+          }
+          catch (IOException e)
+          {
+            close(connection);
+          }
+        }
+      }
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace();
+    }
+    finally
+    {
+      for (SelectionKey key: selector.keys())
+        if (key.attachment() instanceof Connection) ((Connection) key.attachment()).close();
+      try
+      {
+        serverChannel.close();
+        selector.close();
+      }
+      catch (IOException e)
+      {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  private void accept() throws IOException
+  {
+    SocketChannel channel = serverChannel.accept();
+    if (channel == null) return;
+
+    channel.configureBlocking(false);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+    key.attach(new Connection(channel, key));
+  }
+
+  /**
+   * Read and handle all complete messages of a client
+   * @param connection The client
+   * @return Whether the client is still connected and well-behaved
+   * @throws IOException If reading fails
+   */
+  private boolean read(Connection connection) throws IOException
+  {
+    boolean connected = connection.read();
+    ByteBuffer buffer = connection.getReadBuffer();
+    buffer.flip();
+    try
+    {
+      int length;
+      while ((length = Protocol.nextFrame(buffer)) >= 0)
+      {
+        int end = buffer.position() + length;
+        if (length < 2) return false;
+        byte type = buffer.get();
+        if (type == Protocol.JOIN) join(connection, buffer.get() & 0xff);
+        else if (type == Protocol.INPUT) input(connection, buffer.get() & 0xff);
+        buffer.position(end);
+      }
+      // A frame that can never fit
+      if (buffer.remaining() == buffer.capacity()) return false;
+    }
+    finally
+    {
+      buffer.compact();
+    }
+    return connected;
+  }
+
+  private void join(Connection connection, int players)
+  {
+    if (connection.getMatch() != null) return;
+    players = Math.min(Math.max(players, Protocol.MIN_PLAYERS), Protocol.MAX_PLAYERS);
+    for (List<Connection> lobby: lobbies)
+      if (lobby.contains(connection)) return;
+
+    List<Connection> lobby = lobbies.get(players);
+    lobby.add(connection);
+    if (lobby.size() < players) return;
+
+    Connection[] connections = lobby.toArray(new Connection[players]);
+    lobby.clear();
+    new Match(this, connections, rows, cols, seeds.nextLong()).start(workers, tickNanos);
+  }
+
+  private void input(Connection connection, int input)
+  {
+    Match match = connection.getMatch();
+    if (match != null && !match.offerInput(connection.getPlayer(), input))
+      Metrics.INPUTS_DROPPED.increment();
+  }
+
+  private void close(Connection connection)
+  {
+    for (List<Connection> lobby: lobbies)
+      lobby.remove(connection);
+    connection.close();
+  }
+
+  /**
+   * Queue a frame for a client. Called by the matches, the frame is written once the selector
+   * thread is woken up by {@link #flush()}.
+   * @param connection The client
+   * @param frame The frame, not changed afterwards
+   */
+  void send(Connection connection, ByteBuffer frame)
+  {
+    if (connection.enqueue(frame, MAX_QUEUED_BYTES)) pendingFlushes.offer(connection);
+  }
+
+  /**
+   * Wake up the selector thread to write the queued frames
+   */
+  void flush()
+  {
+    if (!pendingFlushes.isEmpty()) selector.wakeup();
+  }
+
+  /**
+   * @return The local port the server listens on
+   */
+  public int getPort()
+  {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  long getTickNanos()
+  {
+    return tickNanos;
+  }
+
+  /**
+   * Run a server from the command line, with the size of the boards taken from -Dtetris.rows and
+   * -Dtetris.cols
+   * @param args [port] [worker threads]
+   */
+  public static void main(String[] args) throws IOException
+  {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    int rows = Integer.getInteger("tetris.rows", Grid.DEFAULT_ROWS);
+    int cols = Integer.getInteger("tetris.cols", Grid.DEFAULT_COLS);
+
+    Server server = new Server(port, rows, cols, threads);
+    server.start();
+    Metrics.register();
+    System.out.printf("Serving %dx%d matches on localhost:%d with %d workers%n", cols, rows, server.getPort(), threads);
+  }
+}
@@ -0,0 +1,100 @@
+package com.github.fahjulian.tetris.net;
+
+import com.github.fahjulian.tetris.Game;
+import com.github.fahjulian.tetris.Grid;
+import com.github.fahjulian.tetris.ui.Viewport;
+import com.github.fahjulian.tetris.ui.Window;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import javax.swing.JComponent;
+
+/**
+ * Watches a game streamed by a {@code SpectatorStream} in a window
+ */
+public class SpectatorClient extends JComponent
+{
+  private static final long serialVersionUID = 6502731458143387516L;
+
+  private final SpectatorState state;
+  private final int blockSize;
+
+  /**
+   * Constructs a new view of a game
+   * @param state The game, which is locked while painting it
+   * @param blockSize Size of a block
+   */
+  public SpectatorClient(SpectatorState state, int blockSize)
+  {
+    this.state = state;
+    this.blockSize = blockSize;
+  }
+
+  @Override
+  protected void paintComponent(Graphics g)
+  {
+    synchronized (state)
+    {
+      state.paint(g, Game.PADDING, Game.PADDING, blockSize);
+      g.setColor(Color.RED);
+      g.drawString(String.format("Score: %d%s", state.getScore(), state.isGameOver() ? " (game over)" : ""),
+          Game.PADDING, Game.PADDING / 2);
+    }
+  }
+
+  /**
+   * Read a stream until it ends, repainting the view after every read
+   * @param channel The stream
+   * @param buffer The buffer to read into, which may already hold a part of the stream
+   * @throws IOException If reading fails
+   */
+  private void watch(SocketChannel channel, ByteBuffer buffer) throws IOException
+  {
+    while (channel.read(buffer) >= 0)
+    {
+      buffer.flip();
+      synchronized (state)
+      {
+        while (state.read(buffer));
+      }
+      buffer.compact();
+      repaint();
+    }
+  }
+
+  /**
+   * Watch a game started with -Dtetris.spectatorPort
+   * @param args [port]
+   */
+  public static void main(String[] args) throws IOException
+  {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 7778;
+    SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getByName(null), port));
+    ByteBuffer buffer = ByteBuffer.allocate(Protocol.MAX_FRAME_SIZE);
+
+    // The size of the window depends on the board of the first keyframe
+    SpectatorState state = new SpectatorState();
+    while (state.getBoard() == null)
+    {
+      if (channel.read(buffer) < 0) return;
+      buffer.flip();
+      while (state.read(buffer));
+      buffer.compact();
+    }
+
+    int rows = state.getBoard().getRows(), cols = state.getBoard().getCols();
+    int blockSize = new Viewport(rows, cols, Grid.BLOCKSIZE, Game.MAX_GRID_WIDTH, Game.MAX_GRID_HEIGHT).getBlockSize();
+    SpectatorClient view = new SpectatorClient(state, blockSize);
+    Window window = new Window("Tetris spectator", cols * blockSize + 2 * Game.PADDING, rows * blockSize + 2 * Game.PADDING);
+    window.add(view, BorderLayout.CENTER);
+    window.validate();
+    view.watch(channel, buffer);
+  }
+}
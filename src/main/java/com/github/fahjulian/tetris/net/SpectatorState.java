@@ -0,0 +1,237 @@
+package com.github.fahjulian.tetris.net;
+
+import com.github.fahjulian.tetris.engine.Board;
+import com.github.fahjulian.tetris.gameobject.Tile;
+import com.github.fahjulian.tetris.ui.BlockAtlas;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+/**
+ * A spectator's copy of a game, rebuilt from a {@code SpectatorStream}. Applies the events to a
+ * {@code Board} of its own, so a tick takes the same time to apply however full the board is, and
+ * only repaints the rows that changed.
+ */
+public class SpectatorState
+{
+  private static final Tile[] TILES;
+
+  private Board board;
+  private int tick;
+  private int score;
+  private Tile tile;
+  private int tileRotation;
+  private int tileCol;
+  private int tileRow;
+  private Tile nextTile;
+  private boolean gameOver;
+  /** The board painted at {@link #imageBlockSize}, repainted where the board is damaged */
+  private BufferedImage image;
+  private int imageBlockSize;
+
+  static
+  {
+    TILES = Tile.values();
+  }
+
+  /**
+   * Apply the next frame of a stream. Ticks before the first keyframe are skipped.
+   * @param buffer The stream, flipped for reading
+   * @return Whether there was a complete frame, which is then consumed
+   */
+  public boolean read(ByteBuffer buffer)
+  {
+    int length = Protocol.nextFrame(buffer);
+    if (length < 0) return false;
+
+    int end = buffer.position() + length;
+    byte type = buffer.get();
+    if (type == SpectatorStream.KEYFRAME) readKeyframe(buffer);
+    else if (type == SpectatorStream.ROWS && board != null) readRows(buffer);
+    else if (type == SpectatorStream.TICK && board != null)
+    {
+      tick = buffer.getInt();
+      while (buffer.position() < end)
+        readEvent(buffer);
+    }
+    buffer.position(end);
+    return true;
+  }
+
+  private void readKeyframe(ByteBuffer buffer)
+  {
+    int rows = buffer.getShort() & 0xffff;
+    int cols = buffer.getShort() & 0xffff;
+    if (board == null || board.getRows() != rows || board.getCols() != cols)
+    {
+      board = new Board(rows, cols);
+      image = null;
+    }
+    tick = buffer.getInt();
+    score = buffer.getInt();
+    readTile(buffer);
+    nextTile = TILES[buffer.get() & 0xff];
+    gameOver = buffer.get() != 0;
+  }
+
+  private void readRows(ByteBuffer buffer)
+  {
+    int top = buffer.getShort() & 0xffff;
+    int count = buffer.getShort() & 0xffff;
+    for (int row = top; row < top + count; row++)
+      for (int col = 0; col < board.getCols(); col += 2)
+      {
+        int packed = buffer.get() & 0xff;
+        board.setTile(row, col, cell(packed & 0xf));
+        if (col + 1 < board.getCols()) board.setTile(row, col + 1, cell(packed >>> 4));
+      }
+  }
+
+  private void readEvent(ByteBuffer buffer)
+  {
+    int event = buffer.get() & 0xff;
+    if (event == SpectatorStream.TILE_MOVED) readTile(buffer);
+    else if (event == SpectatorStream.TILE_LOCKED)
+    {
+      Tile locked = TILES[buffer.get() & 0xff];
+      int rotation = buffer.get() & 0xff;
+      int col = buffer.getShort();
+      board.place(locked, rotation, col, buffer.getShort());
+    }
+    else if (event == SpectatorStream.ROW_ERASED) board.eraseRow(buffer.getShort() & 0xffff);
+    else if (event == SpectatorStream.ROW_ADDED)
+    {
+      Tile garbage = TILES[buffer.get() & 0xff];
+      board.addRow(garbage, buffer.getShort() & 0xffff);
+    }
+    else if (event == SpectatorStream.CELL_SET)
+    {
+      int row = buffer.getShort() & 0xffff;
+      int col = buffer.getShort() & 0xffff;
+      board.setTile(row, col, cell(buffer.get() & 0xff));
+    }
+    else if (event == SpectatorStream.BOARD_CLEARED) board.clear();
+    else if (event == SpectatorStream.SCORE) score = buffer.getInt();
+    else if (event == SpectatorStream.NEXT_TILE) nextTile = TILES[buffer.get() & 0xff];
+    else if (event == SpectatorStream.GAME_OVER) gameOver = buffer.get() != 0;
+    else throw new IllegalArgumentException("Unknown event " + event);
+  }
+
+  private void readTile(ByteBuffer buffer)
+  {
+    int ordinal = buffer.get() & 0xff;
+    tile = ordinal == SpectatorStream.NO_TILE ? null : TILES[ordinal];
+    tileRotation = buffer.get() & 0xff;
+    tileCol = buffer.getShort();
+    tileRow = buffer.getShort();
+  }
+
+  private static Tile cell(int value)
+  {
+    return value == 0 ? null : TILES[value - 1];
+  }
+
+  /**
+   * Paint the board and the current tile. Nothing is painted before the first keyframe.
+   * @param g The graphics to paint to
+   * @param x X coordinate of the top-left corner of the board
+   * @param y Y coordinate of the top-left corner of the board
+   * @param blockSize Size of a block
+   */
+  public void paint(Graphics g, int x, int y, int blockSize)
+  {
+    if (board == null) return;
+
+    BlockAtlas atlas = BlockAtlas.get(blockSize);
+    if (image == null || imageBlockSize != blockSize)
+    {
+      image = new BufferedImage(board.getCols() * blockSize, board.getRows() * blockSize, BufferedImage.TYPE_INT_RGB);
+      imageBlockSize = blockSize;
+      board.clearDamage();
+      paintRows(atlas, 0, board.getRows() - 1);
+    }
+    else if (board.getDamageTop() <= board.getDamageBottom())
+    {
+      paintRows(atlas, board.getDamageTop(), board.getDamageBottom());
+    }
+    board.clearDamage();
+    g.drawImage(image, x, y, null);
+
+    if (tile == null || gameOver) return;
+    for (int cell = 0; cell < Tile.CELLS; cell++)
+    {
+      int row = tileRow + tile.getCellRow(tileRotation, cell);
+      int col = tileCol + tile.getCellCol(tileRotation, cell);
+      if (row >= 0) atlas.render(g, tile, x + col * blockSize, y + row * blockSize);
+    }
+  }
+
+  private void paintRows(BlockAtlas atlas, int top, int bottom)
+  {
+    int size = imageBlockSize;
+    Graphics2D g = image.createGraphics();
+    g.setColor(Color.BLACK);
+    g.fillRect(0, top * size, image.getWidth(), (bottom - top + 1) * size);
+    for (int row = top; row <= bottom; row++)
+    {
+      if (board.isRowEmpty(row)) continue;
+      for (int col = 0; col < board.getCols(); col++)
+      {
+        Tile cell = board.getTile(row, col);
+        if (cell != null) atlas.render(g, cell, col * size, row * size);
+      }
+    }
+    g.dispose();
+  }
+
+  /**
+   * @return The board, or {@code null} before the first keyframe
+   */
+  public Board getBoard()
+  {
+    return board;
+  }
+
+  public int getTick()
+  {
+    return tick;
+  }
+
+  public int getScore()
+  {
+    return score;
+  }
+
+  public Tile getCurrentTile()
+  {
+    return tile;
+  }
+
+  public int getTileRotation()
+  {
+    return tileRotation;
+  }
+
+  public int getTileCol()
+  {
+    return tileCol;
+  }
+
+  public int getTileRow()
+  {
+    return tileRow;
+  }
+
+  public Tile getNextTile()
+  {
+    return nextTile;
+  }
+
+  public boolean isGameOver()
+  {
+    return gameOver;
+  }
+}
@@ -0,0 +1,401 @@
+package com.github.fahjulian.tetris.net;
+
+import com.github.fahjulian.tetris.engine.Board;
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.gameobject.Tile;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Streams a game to spectators as a keyframe followed by the changes of every tick. Framed like
+ * the {@link Protocol} messages, a stream consists of:
+ * <ul>
+ * <li>{@link #KEYFRAME}: rows (u16), columns (u16), the tick (i32), the score (i32), the current
+ * tile ({@link #NO_TILE} if none), rotation (u8), column (i16) and row (i16), the next tile (u8)
+ * and whether the game is over (u8), followed by {@link #ROWS} frames of every row</li>
+ * <li>{@link #ROWS}: topmost row (u16), amount of rows (u16), then two cells per byte as in a
+ * {@link Protocol#STATE}</li>
+ * <li>{@link #TICK}: the tick (i32), then the events of the tick in the order they happened, every
+ * event its type (u8) and body. Ticks without events are left out.</li>
+ * </ul>
+ * Events only describe what changed, e.g. the 4 cells of a locked tile or the index of an erased
+ * row, so a tick costs the same to encode and send however full the board is. It is encoded once
+ * and written to every spectator. A spectator whose channel cannot take a tick in time misses it
+ * and gets a new keyframe once it caught up.
+ */
+public class SpectatorStream implements Board.ChangeListener
+{
+  public static final byte KEYFRAME;
+  public static final byte ROWS;
+  public static final byte TICK;
+
+  /** The current tile moved, rotated or was replaced. Tile (u8), rotation (u8), column (i16), row (i16) */
+  public static final int TILE_MOVED;
+  /** A tile was placed on the board. Tile (u8), rotation (u8), column (i16), row (i16) */
+  public static final int TILE_LOCKED;
+  /** A row was erased and the rows above dropped down. Row (u16) */
+  public static final int ROW_ERASED;
+  /** A garbage row was pushed in from the bottom. Tile (u8), empty column (u16) */
+  public static final int ROW_ADDED;
+  /** A single cell changed. Row (u16), column (u16), tile ordinal + 1 or 0 if empty (u8) */
+  public static final int CELL_SET;
+  /** All cells were emptied */
+  public static final int BOARD_CLEARED;
+  /** The score changed. Score (i32) */
+  public static final int SCORE;
+  /** The next tile changed. Tile (u8) */
+  public static final int NEXT_TILE;
+  /** The game was lost or restarted. Whether it is over (u8) */
+  public static final int GAME_OVER;
+
+  public static final int NO_TILE;
+  /** The size of a tick after which the spectators get a keyframe instead */
+  private static final int MAX_TICK_SIZE;
+
+  private final Engine engine;
+  private final CopyOnWriteArrayList<Spectator> spectators;
+  private ByteBuffer events;
+  private int frameStart;
+  private boolean overflowed;
+  private int tick;
+
+  // The state last sent to the spectators
+  private int sentTile;
+  private int sentRotation;
+  private int sentCol;
+  private int sentRow;
+  private int sentScore;
+  private int sentNext;
+  private boolean sentGameOver;
+
+  static
+  {
+    KEYFRAME = 1;
+    ROWS = 2;
+    TICK = 3;
+    TILE_MOVED = 1;
+    TILE_LOCKED = 2;
+    ROW_ERASED = 3;
+    ROW_ADDED = 4;
+    CELL_SET = 5;
+    BOARD_CLEARED = 6;
+    SCORE = 7;
+    NEXT_TILE = 8;
+    GAME_OVER = 9;
+    NO_TILE = 0xff;
+    MAX_TICK_SIZE = Protocol.MAX_FRAME_SIZE - 16;
+  }
+
+  /**
+   * Constructs a new stream of a game, listening to the changes of its board from now on
+   * @param engine The game
+   */
+  public SpectatorStream(Engine engine)
+  {
+    this.engine = engine;
+    this.spectators = new CopyOnWriteArrayList<Spectator>();
+    this.events = ByteBuffer.allocate(1024);
+    engine.getBoard().setChangeListener(this);
+    rememberState();
+    beginTick();
+  }
+
+  /**
+   * Add a spectator, which gets a keyframe with the next tick. May be called from any thread.
+   * @param channel The channel to write to. Non-blocking channels are never waited for, a blocking
+   *     channel blocks the thread calling {@link #tick()} until the spectator took the tick.
+   */
+  public void addSpectator(WritableByteChannel channel)
+  {
+    spectators.add(new Spectator(channel));
+  }
+
+  /**
+   * Accept spectators on a port of the loopback interface in the background, see
+   * {@code SpectatorClient}
+   * @param port The local port to listen on
+   * @throws IOException If the port cannot be bound
+   */
+  public void listen(int port) throws IOException
+  {
+    final ServerSocketChannel server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress(InetAddress.getByName(null), port));
+    Thread acceptor = new Thread("Spectator acceptor") {
+      @Override
+      public void run()
+      {
+        try
+        {
+          while (true)
+          {
+            SocketChannel channel = server.accept();
+            // Never let a slow spectator hold up the game
+            channel.configureBlocking(false);
+            addSpectator(channel);
+          }
+        }
+        catch (IOException e)
+        {
+          e.printStackTrace();
+        }
+      }
+    };
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * @return The amount of spectators
+   */
+  public int getSpectators()
+  {
+    return spectators.size();
+  }
+
+  /**
+   * Send the changes since the last tick to all spectators. Called by the thread stepping the
+   * game, after every update.
+   */
+  public void tick()
+  {
+    appendChanges();
+
+    ByteBuffer delta = null;
+    if (!overflowed && events.position() > frameStart + 2 + 1 + 4)
+    {
+      Protocol.endFrame(events, frameStart);
+      delta = events;
+      delta.flip();
+    }
+
+    ByteBuffer keyframe = null;
+    for (Spectator spectator: spectators)
+    {
+      try
+      {
+        if (!spectator.flush())
+        {
+          // Still writing an earlier tick, this one is missed
+          if (delta != null || overflowed) spectator.needsKeyframe = true;
+          continue;
+        }
+
+        if (spectator.needsKeyframe || overflowed)
+        {
+          if (keyframe == null) keyframe = writeKeyframe();
+          spectator.needsKeyframe = false;
+          spectator.write(keyframe.duplicate());
+        }
+        else if (delta != null) spectator.write(delta.duplicate());
+      }
+      catch (IOException e)
+      {
+        // The spectator went away
+        spectators.remove(spectator);
+      }
+    }
+
+    tick++;
+    beginTick();
+  }
+
+  private void beginTick()
+  {
+    events.clear();
+    overflowed = false;
+    frameStart = Protocol.beginFrame(events, TICK);
+    events.putInt(tick);
+  }
+
+  /**
+   * Add the events of the current tile, the score, the next tile and the game over state if they
+   * changed since they were last sent
+   */
+  private void appendChanges()
+  {
+    int tile = engine.getCurrentTile() == null ? NO_TILE : engine.getCurrentTile().ordinal();
+    if (tile != sentTile || engine.getTileRotation() != sentRotation || engine.getTileCol() != sentCol ||
+        engine.getTileRow() != sentRow)
+    {
+      event(TILE_MOVED, 6);
+      events.put((byte) tile);
+      events.put((byte) engine.getTileRotation());
+      events.putShort((short) engine.getTileCol());
+      events.putShort((short) engine.getTileRow());
+    }
+    if (engine.getScore() != sentScore)
+    {
+      event(SCORE, 4);
+      events.putInt(engine.getScore());
+    }
+    if (engine.getNextTile().ordinal() != sentNext)
+    {
+      event(NEXT_TILE, 1);
+      events.put((byte) engine.getNextTile().ordinal());
+    }
+    if (engine.isGameOver() != sentGameOver)
+    {
+      event(GAME_OVER, 1);
+      events.put((byte) (engine.isGameOver() ? 1 : 0));
+    }
+    rememberState();
+  }
+
+  private void rememberState()
+  {
+    sentTile = engine.getCurrentTile() == null ? NO_TILE : engine.getCurrentTile().ordinal();
+    sentRotation = engine.getTileRotation();
+    sentCol = engine.getTileCol();
+    sentRow = engine.getTileRow();
+    sentScore = engine.getScore();
+    sentNext = engine.getNextTile().ordinal();
+    sentGameOver = engine.isGameOver();
+  }
+
+  /**
+   * Start an event, making room for it
+   * @param type The type of the event
+   * @param size The size of its body
+   */
+  private void event(int type, int size)
+  {
+    if (events.position() + 1 + size > MAX_TICK_SIZE)
+    {
+      // Too much happened in one tick to send, e.g. after a long step; send a keyframe instead
+      overflowed = true;
+      events.position(frameStart + 2 + 1 + 4);
+    }
+    if (events.remaining() < 1 + size)
+    {
+      ByteBuffer larger = ByteBuffer.allocate(Math.min(events.capacity() * 2, MAX_TICK_SIZE));
+      events.flip();
+      events = larger.put(events);
+    }
+    events.put((byte) type);
+  }
+
+  /**
+   * Write a keyframe of the current state of the game
+   * @return The keyframe, ready to be read
+   */
+  private ByteBuffer writeKeyframe()
+  {
+    Board board = engine.getBoard();
+    int rowSize = Protocol.getRowSize(board.getCols());
+    int rowsPerFrame = Math.max((MAX_TICK_SIZE - 2 - 1 - 4) / rowSize, 1);
+    int frames = (board.getRows() + rowsPerFrame - 1) / rowsPerFrame;
+    ByteBuffer out = ByteBuffer.allocate(2 + 1 + 20 + frames * (2 + 1 + 4) + board.getRows() * rowSize);
+
+    int start = Protocol.beginFrame(out, KEYFRAME);
+    out.putShort((short) board.getRows());
+    out.putShort((short) board.getCols());
+    out.putInt(tick);
+    out.putInt(sentScore);
+    out.put((byte) sentTile);
+    out.put((byte) sentRotation);
+    out.putShort((short) sentCol);
+    out.putShort((short) sentRow);
+    out.put((byte) sentNext);
+    out.put((byte) (sentGameOver ? 1 : 0));
+    Protocol.endFrame(out, start);
+
+    for (int top = 0; top < board.getRows(); top += rowsPerFrame)
+    {
+      int bottom = Math.min(top + rowsPerFrame, board.getRows()) - 1;
+      start = Protocol.beginFrame(out, ROWS);
+      Match.writeRows(out, board, top, bottom);
+      Protocol.endFrame(out, start);
+    }
+    out.flip();
+    return out;
+  }
+
+  @Override
+  public void onPlace(Tile tile, int rotation, int col, int row)
+  {
+    event(TILE_LOCKED, 6);
+    events.put((byte) tile.ordinal());
+    events.put((byte) rotation);
+    events.putShort((short) col);
+    events.putShort((short) row);
+  }
+
+  @Override
+  public void onSetTile(int row, int col, Tile tile)
+  {
+    event(CELL_SET, 5);
+    events.putShort((short) row);
+    events.putShort((short) col);
+    events.put((byte) (tile == null ? 0 : tile.ordinal() + 1));
+  }
+
+  @Override
+  public void onEraseRow(int row)
+  {
+    event(ROW_ERASED, 2);
+    events.putShort((short) row);
+  }
+
+  @Override
+  public void onAddRow(Tile tile, int gap)
+  {
+    event(ROW_ADDED, 3);
+    events.put((byte) tile.ordinal());
+    events.putShort((short) gap);
+  }
+
+  @Override
+  public void onClear()
+  {
+    event(BOARD_CLEARED, 0);
+  }
+
+  /**
+   * A channel to a spectator and the part of a frame it did not take yet
+   */
+  private static class Spectator
+  {
+    private final WritableByteChannel channel;
+    private ByteBuffer pending;
+    private boolean needsKeyframe;
+
+    Spectator(WritableByteChannel channel)
+    {
+      this.channel = channel;
+      this.needsKeyframe = true;
+    }
+
+    /**
+     * Write what is left of the last frame
+     * @return Whether all of it is written
+     */
+    boolean flush() throws IOException
+    {
+      if (pending == null) return true;
+      channel.write(pending);
+      if (pending.hasRemaining()) return false;
+      pending = null;
+      return true;
+    }
+
+    /**
+     * Write a frame, keeping a copy of what the channel did not take
+     * @param frame The frame, which may be reused once written
+     */
+    void write(ByteBuffer frame) throws IOException
+    {
+      channel.write(frame);
+      if (!frame.hasRemaining()) return;
+      pending = ByteBuffer.allocate(frame.remaining());
+      pending.put(frame);
+      pending.flip();
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.github.fahjulian.tetris.replay;
+
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.engine.Input;
+import com.github.fahjulian.tetris.engine.PieceGenerator;
+import com.github.fahjulian.tetris.util.Clock;
+import com.github.fahjulian.tetris.util.TimeSource;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Plays a replay back on a new engine, either following the time of a {@code TimeSource} or as 
+ * fast as possible
+ */
+public class ReplayPlayer
+{
+  private final ReplayReader reader;
+  private final Engine engine;
+  private final Clock clock;
+
+  /** Ticks left until the input of the current event */
+  private int remainingTicks;
+  private boolean hasEvent;
+  private boolean finished;
+
+  /**
+   * Constructs a new player
+   * @param reader The replay to play
+   * @param timeSource Source of the time used by {@link #update()}
+   */
+  public ReplayPlayer(ReplayReader reader, TimeSource timeSource)
+  {
+    this.reader = reader;
+    this.engine = new Engine(reader.getRows(), reader.getCols(), timeSource, 
+        new PieceGenerator(reader.getMode(), reader.getSeed(), Engine.LOOKAHEAD));
+    this.clock = new Clock(timeSource);
+  }
+
+  /**
+   * Advance the replay by the time passed on the time source since the last update
+   * @return Whether or not the replay has events left
+   */
+  public boolean update()
+  {
+    return advance(clock.getTicks(Engine.TICKS_PER_SECOND));
+  }
+
+  /**
+   * Discard the time passed on the time source since the last update, e.g. while paused
+   */
+  public void resetClock()
+  {
+    clock.reset();
+  }
+
+  /**
+   * Advance the replay by a given amount of ticks
+   * @param ticks The amount of ticks to advance
+   * @return Whether or not the replay has events left
+   */
+  public boolean advance(int ticks)
+  {
+    while (!finished)
+    {
+      if (!hasEvent)
+      {
+        if (!reader.next())
+        {
+          finished = true;
+          break;
+        }
+        remainingTicks = reader.getTicks();
+        hasEvent = true;
+      }
+
+      if (remainingTicks > ticks)
+      {
+        engine.step(Input.NONE, ticks);
+        remainingTicks -= ticks;
+        return true;
+      }
+
+      engine.step(Input.NONE, remainingTicks);
+      ticks -= remainingTicks;
+      engine.step(reader.getInput(), 0);
+      hasEvent = false;
+    }
+    return false;
+  }
+
+  /**
+   * Play the whole replay as fast as possible
+   */
+  public void playToEnd()
+  {
+    while (!finished)
+      advance(Integer.MAX_VALUE);
+  }
+
+  public Engine getEngine()
+  {
+    return engine;
+  }
+
+  public boolean isFinished()
+  {
+    return finished;
+  }
+
+  /**
+   * Play replays headless as fast as possible and print their outcome
+   * @param args The replay files
+   */
+  public static void main(String[] args) throws IOException
+  {
+    for (String path: args)
+    {
+      long start = System.nanoTime();
+      ReplayPlayer player = new ReplayPlayer(new ReplayReader(new File(path)), TimeSource.SYSTEM);
+      player.playToEnd();
+      Engine engine = player.getEngine();
+      System.out.printf("%s: score %d, lines %d, pieces %d, %.1fs of game time replayed in %.3fms%n", path, 
+          engine.getScore(), engine.getClearedRows(), engine.getPiecesLocked(), 
+          engine.getTicks() / (double) Engine.TICKS_PER_SECOND, (System.nanoTime() - start) / 1e6);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package com.github.fahjulian.tetris.replay;
+
+import com.github.fahjulian.tetris.engine.Input;
+import com.github.fahjulian.tetris.engine.PieceGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a replay written by a {@code ReplayRecorder} through a memory mapped buffer, one input
+ * event at a time without creating any objects.
+ */
+public class ReplayReader
+{
+  private static final Input[] INPUTS;
+
+  private final MappedByteBuffer buffer;
+  private final int rows;
+  private final int cols;
+  private final PieceGenerator.Mode mode;
+  private final long seed;
+  /** Start of the events, after the header */
+  private final int eventsStart;
+
+  private int ticks;
+  private Input input;
+
+  static
+  {
+    INPUTS = Input.values();
+  }
+
+  /**
+   * Map a replay file and read its header
+   * @param file The replay file
+   * @throws IOException If the file cannot be read or is not a replay
+   */
+  public ReplayReader(File file) throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try
+    {
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+    }
+    finally
+    {
+      raf.close();
+    }
+
+    if (buffer.remaining() < 5 || buffer.getInt() != ReplayRecorder.MAGIC) throw new IOException(file + " is not a replay");
+    int version = buffer.get();
+    if (version != ReplayRecorder.VERSION) throw new IOException("Unsupported replay version " + version);
+    rows = (int) readVarint();
+    cols = (int) readVarint();
+    mode = PieceGenerator.Mode.values()[buffer.get()];
+    seed = buffer.getLong();
+    eventsStart = buffer.position();
+  }
+
+  /**
+   * Read the next event
+   * @return Whether or not there was another event
+   */
+  public boolean next()
+  {
+    if (!buffer.hasRemaining()) return false;
+    long event = readVarint();
+    ticks = (int) (event >>> ReplayRecorder.INPUT_BITS);
+    input = INPUTS[(int) (event & ((1 << ReplayRecorder.INPUT_BITS) - 1))];
+    return true;
+  }
+
+  /**
+   * Start reading the events from the beginning again
+   */
+  public void rewind()
+  {
+    buffer.position(eventsStart);
+  }
+
+  /**
+   * Get the ticks passed between the previous event and the current one
+   * @return The amount of ticks
+   */
+  public int getTicks()
+  {
+    return ticks;
+  }
+
+  /**
+   * Get the input of the current event
+   * @return The input, {@link Input#NONE} for the ticks passed after the last input
+   */
+  public Input getInput()
+  {
+    return input;
+  }
+
+  public int getRows()
+  {
+    return rows;
+  }
+
+  public int getCols()
+  {
+    return cols;
+  }
+
+  public PieceGenerator.Mode getMode()
+  {
+    return mode;
+  }
+
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  private long readVarint()
+  {
+    long value = 0;
+    for (int shift = 0; ; shift += 7)
+    {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) return value;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package com.github.fahjulian.tetris.replay;
+
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.engine.Input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Records every step of an engine into a compact binary replay file. A replay starts with a header
+ * ({@link #MAGIC}, {@link #VERSION}, rows and columns as varints, the tile generator mode and the
+ * 8 byte seed), followed by one varint per input: the ticks passed since the previous input, 
+ * shifted left by {@link #INPUT_BITS}, or'd with the input's ordinal. Synchronized, so a replay can
+ * be finished from a shutdown hook. Only the newest replays are kept, older ones are deleted
+ * whenever a recording starts.
+ */
+public class ReplayRecorder implements Engine.StepListener
+{
+  public static final int MAGIC;
+  public static final int VERSION;
+  /** The amount of low bits of an event encoding the input */
+  public static final int INPUT_BITS;
+  /** The file extension of replays */
+  public static final String EXTENSION;
+
+  private final File directory;
+  /** The amount of replays kept in the directory, or 0 to keep all */
+  private final int maxReplays;
+
+  private DataOutputStream out;
+  private File file;
+  /** Ticks passed since the last recorded input */
+  private long pendingTicks;
+
+  static
+  {
+    MAGIC = 0x54545250; // TTRP
+    VERSION = 1;
+    INPUT_BITS = 3;
+    EXTENSION = ".ttr";
+  }
+
+  /**
+   * Constructs a new recorder keeping all replays
+   * @param directory The directory to write the replays to, created if it does not exist
+   */
+  public ReplayRecorder(File directory)
+  {
+    this(directory, 0);
+  }
+
+  /**
+   * Constructs a new recorder
+   * @param directory The directory to write the replays to, created if it does not exist
+   * @param maxReplays The amount of replays to keep including the one being recorded, or 0 to
+   *     keep all
+   */
+  public ReplayRecorder(File directory, int maxReplays)
+  {
+    this.directory = directory;
+    this.maxReplays = maxReplays;
+  }
+
+  /**
+   * Start recording a game that has just been started or reset. Finishes the previous replay.
+   * @param engine The game to record
+   */
+  public synchronized void start(Engine engine)
+  {
+    finish();
+    try
+    {
+      if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+      deleteOldReplays();
+      file = new File(directory, System.currentTimeMillis() + EXTENSION);
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      writeVarint(engine.getRows());
+      writeVarint(engine.getCols());
+      out.writeByte(engine.getGenerator().getMode().ordinal());
+      out.writeLong(engine.getSeed());
+      pendingTicks = 0;
+      engine.setStepListener(this);
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace();
+      out = null;
+    }
+  }
+
+  @Override
+  public synchronized void onStep(Input input, int ticks)
+  {
+    if (out == null) return;
+    if (input != Input.NONE)
+    {
+      write(pendingTicks, input);
+      pendingTicks = 0;
+    }
+    pendingTicks += ticks;
+  }
+
+  /**
+   * Write the ticks passed since the last input and close the replay file
+   */
+  public synchronized void finish()
+  {
+    if (out == null) return;
+    try
+    {
+      if (pendingTicks > 0) write(pendingTicks, Input.NONE);
+      out.close();
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace();
+    }
+    out = null;
+  }
+
+  /**
+   * Get the file of the current or last replay
+   * @return The replay file, or {@code null} if nothing has been recorded
+   */
+  public synchronized File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * Delete the oldest replays, leaving room for {@link #maxReplays} including the next one
+   */
+  private void deleteOldReplays()
+  {
+    if (maxReplays <= 0) return;
+    File[] replays = directory.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file)
+      {
+        return file.isFile() && file.getName().endsWith(EXTENSION);
+      }
+    });
+    if (replays == null || replays.length < maxReplays) return;
+
+    // Newest first
+    Arrays.sort(replays, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b)
+      {
+        return Long.compare(b.lastModified(), a.lastModified());
+      }
+    });
+    for (int i = maxReplays - 1; i < replays.length; i++)
+      if (!replays[i].delete())
+        new IOException("Cannot delete " + replays[i]).printStackTrace();
+  }
+
+  private void write(long ticks, Input input)
+  {
+    try
+    {
+      writeVarint(ticks << INPUT_BITS | input.ordinal());
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace();
+      out = null;
+    }
+  }
+
+  private void writeVarint(long value) throws IOException
+  {
+    while ((value & ~0x7FL) != 0)
+    {
+      out.writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+}
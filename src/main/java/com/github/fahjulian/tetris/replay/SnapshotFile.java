@@ -0,0 +1,184 @@
+package com.github.fahjulian.tetris.replay;
+
+import com.github.fahjulian.tetris.engine.Engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the latest state of a game in a memory mapped file, so it can be continued after the
+ * process ended. A save is a copy into the mapped memory and no system call, so it takes
+ * microseconds and can be done while playing; the operating system writes the pages to the disk
+ * on its own and keeps them when the process dies.
+ * <p>
+ * The file starts with {@link #MAGIC} and {@link #VERSION}, followed by two slots of a sequence
+ * number (i64), the length (i32) and CRC32 (i32) of the state and the state as written by
+ * {@link Engine#save(ByteBuffer)}. Saves go to the slot with the older state, and the sequence
+ * number is written last, so a save cut short leaves the other slot to restore from.
+ */
+public class SnapshotFile
+{
+  public static final int MAGIC;
+  public static final int VERSION;
+  /** The size of the file header */
+  private static final int HEADER_SIZE;
+  /** The size of the header of a slot */
+  private static final int SLOT_HEADER_SIZE;
+
+  private final MappedByteBuffer buffer;
+  private final int slotSize;
+  private final ByteBuffer scratch;
+  private final CRC32 crc;
+  private long sequence;
+  /** The slot the next save goes to */
+  private int slot;
+
+  static
+  {
+    MAGIC = 0x54545353; // TTSS
+    VERSION = 1;
+    HEADER_SIZE = 4 + 1;
+    SLOT_HEADER_SIZE = 8 + 4 + 4;
+  }
+
+  /**
+   * Map a snapshot file, creating it if it does not exist
+   * @param file The file
+   * @param maxStateSize The most bytes a state takes, see
+   *     {@link Engine#getMaxStateSize(int, int, com.github.fahjulian.tetris.engine.PieceGenerator)}
+   * @throws IOException If the file cannot be mapped
+   */
+  public SnapshotFile(File file, int maxStateSize) throws IOException
+  {
+    slotSize = SLOT_HEADER_SIZE + maxStateSize;
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try
+    {
+      // The slots of a file of another board size fail their checks and are overwritten
+      long size = HEADER_SIZE + 2L * slotSize;
+      if (raf.length() < size) raf.setLength(size);
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    finally
+    {
+      raf.close();
+    }
+    scratch = ByteBuffer.allocate(maxStateSize);
+    crc = new CRC32();
+
+    if (buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION)
+    {
+      buffer.putLong(HEADER_SIZE, 0);
+      buffer.putLong(HEADER_SIZE + slotSize, 0);
+      buffer.putInt(0, MAGIC);
+      buffer.put(4, (byte) VERSION);
+    }
+    int latest = getLatestSlot();
+    sequence = latest < 0 ? 0 : buffer.getLong(getSlotStart(latest));
+    slot = latest == 0 ? 1 : 0;
+  }
+
+  /**
+   * Save the state of a game, replacing the older of the two saved states
+   * @param engine The game
+   */
+  public void save(Engine engine)
+  {
+    scratch.clear();
+    engine.save(scratch);
+    scratch.flip();
+    crc.reset();
+    crc.update(scratch.array(), 0, scratch.limit());
+
+    int start = getSlotStart(slot);
+    ByteBuffer out = buffer.duplicate();
+    out.position(start + SLOT_HEADER_SIZE);
+    out.put(scratch);
+    buffer.putInt(start + 8, scratch.limit());
+    buffer.putInt(start + 12, (int) crc.getValue());
+    // Marks the slot as the latest only once it is complete
+    buffer.putLong(start, ++sequence);
+    slot = slot == 0 ? 1 : 0;
+  }
+
+  /**
+   * Continue the latest saved game
+   * @param engine The game to restore, with a board of the same size as the saved one
+   * @return Whether there was a saved game, which was then restored
+   */
+  public boolean restore(Engine engine)
+  {
+    int latest = getLatestSlot();
+    if (latest < 0) return false;
+
+    ByteBuffer in = buffer.duplicate();
+    int start = getSlotStart(latest) + SLOT_HEADER_SIZE;
+    in.position(start);
+    in.limit(start + buffer.getInt(getSlotStart(latest) + 8));
+    try
+    {
+      engine.restore(in.slice());
+      return true;
+    }
+    catch (RuntimeException e)
+    {
+      // Saved on a board of another size, the game is left as it was; otherwise start over
+      if (!(e instanceof IllegalArgumentException)) engine.reset();
+      return false;
+    }
+  }
+
+  /**
+   * Forget the saved games, e.g. once a game is over
+   */
+  public void clear()
+  {
+    buffer.putLong(getSlotStart(0), 0);
+    buffer.putLong(getSlotStart(1), 0);
+  }
+
+  /**
+   * Find the slot with the latest complete state
+   * @return The slot, or -1 if none is complete
+   */
+  private int getLatestSlot()
+  {
+    int latest = -1;
+    long latestSequence = 0;
+    for (int i = 0; i < 2; i++)
+    {
+      long slotSequence = buffer.getLong(getSlotStart(i));
+      if (slotSequence > latestSequence && isValid(i))
+      {
+        latest = i;
+        latestSequence = slotSequence;
+      }
+    }
+    return latest;
+  }
+
+  private boolean isValid(int slot)
+  {
+    int start = getSlotStart(slot);
+    int length = buffer.getInt(start + 8);
+    if (length <= 0 || length > slotSize - SLOT_HEADER_SIZE) return false;
+
+    byte[] state = new byte[length];
+    ByteBuffer in = buffer.duplicate();
+    in.position(start + SLOT_HEADER_SIZE);
+    in.get(state);
+    CRC32 check = new CRC32();
+    check.update(state);
+    return (int) check.getValue() == buffer.getInt(start + 12);
+  }
+
+  private int getSlotStart(int slot)
+  {
+    return HEADER_SIZE + slot * slotSize;
+  }
+}
@@ -0,0 +1,212 @@
+package com.github.fahjulian.tetris.sim;
+
+import com.github.fahjulian.tetris.Grid;
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.engine.Input;
+import com.github.fahjulian.tetris.engine.PieceGenerator;
+import com.github.fahjulian.tetris.util.SplitMixRandom;
+import com.github.fahjulian.tetris.util.TimeSource;
+
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays many independent, seeded games without a window on a {@code ForkJoinPool}. Every game
+ * gets its own engine and policy, so the games share nothing but the result sink and the totals.
+ */
+public class BatchSimulator
+{
+  private final int rows;
+  private final int cols;
+  private final PieceGenerator.Mode mode;
+  private final int maxPieces;
+  private final PlacementPolicy.Factory policyFactory;
+  private final ForkJoinPool pool;
+
+  private final AtomicLong pieces;
+  private final AtomicLong lines;
+  private final AtomicLong totalScore;
+  private final AtomicInteger maxScore;
+
+  /**
+   * Constructs a new simulator
+   * @param rows Amount of rows of the boards
+   * @param cols Amount of columns of the boards
+   * @param mode How the tiles of every game are drawn
+   * @param maxPieces The amount of tiles after which a game is stopped if it has not been lost
+   * @param policyFactory Creates the policy placing the tiles of every game
+   * @param pool The pool to play the games on
+   */
+  public BatchSimulator(int rows, int cols, PieceGenerator.Mode mode, int maxPieces, 
+      PlacementPolicy.Factory policyFactory, ForkJoinPool pool)
+  {
+    this.rows = rows;
+    this.cols = cols;
+    this.mode = mode;
+    this.maxPieces = maxPieces;
+    this.policyFactory = policyFactory;
+    this.pool = pool;
+    this.pieces = new AtomicLong();
+    this.lines = new AtomicLong();
+    this.totalScore = new AtomicLong();
+    this.maxScore = new AtomicInteger();
+  }
+
+  /**
+   * Play a batch of games and wait for all of them to finish
+   * @param games The amount of games to play
+   * @param seed Seed of the whole batch, every game derives its own seed from it
+   * @param sink Receives the result of every game as soon as it finishes
+   * @return Totals and throughput of the batch
+   * @throws IllegalArgumentException If the amount of games is negative
+   */
+  public SimulationReport run(int games, long seed, ResultSink sink)
+  {
+    if (games < 0) throw new IllegalArgumentException("Games must not be negative");
+    pieces.set(0);
+    lines.set(0);
+    totalScore.set(0);
+    maxScore.set(0);
+
+    long start = System.nanoTime();
+    pool.invoke(new GamesTask(0, games, seed, sink));
+    return new SimulationReport(games, pieces.get(), lines.get(), totalScore.get(), maxScore.get(), 
+        System.nanoTime() - start);
+  }
+
+  /**
+   * Play a single game to the end
+   * @param game Index of the game in its batch
+   * @param seed Seed of the game's tile sequence
+   * @return The outcome of the game
+   */
+  public GameResult play(int game, long seed)
+  {
+    long start = System.nanoTime();
+    Engine engine = new Engine(rows, cols, TimeSource.SYSTEM, new PieceGenerator(mode, seed, Engine.LOOKAHEAD));
+    PlacementPolicy policy = policyFactory.create(seed);
+    Placement placement = new Placement();
+
+    while (!engine.isGameOver() && engine.getPiecesLocked() < maxPieces)
+    {
+      policy.choose(engine, placement);
+      place(engine, placement);
+    }
+
+    return new GameResult(game, seed, engine.getScore(), engine.getClearedRows(), engine.getPiecesLocked(), 
+        engine.getTicks(), System.nanoTime() - start, engine.isGameOver());
+  }
+
+  /**
+   * Move the current tile of a game to a placement by rotating it, moving it sideways and then 
+   * letting it fall accelerated until it locks, the same way a player would
+   * @param engine The game
+   * @param placement Where to place the current tile
+   */
+  public static void place(Engine engine, Placement placement)
+  {
+    int piecesLocked = engine.getPiecesLocked();
+    int rotations = (placement.getRotation() - engine.getTileRotation() + 4) % 4;
+    for (int i = 0; i < rotations; i++)
+      engine.step(Input.ROTATE, 0);
+
+    while (engine.getPiecesLocked() == piecesLocked && engine.getTileCol() != placement.getCol())
+    {
+      int col = engine.getTileCol();
+      engine.step(col < placement.getCol() ? Input.RIGHT : Input.LEFT, 0);
+      if (engine.getTileCol() == col) break;
+    }
+
+    engine.step(Input.ACCELERATE, 0);
+    while (!engine.isGameOver() && engine.getPiecesLocked() == piecesLocked)
+      engine.step(Input.NONE, engine.getGravityInterval() + 1);
+  }
+
+  private void record(GameResult result, ResultSink sink)
+  {
+    pieces.addAndGet(result.getPieces());
+    lines.addAndGet(result.getLines());
+    totalScore.addAndGet(result.getScore());
+    int max;
+    while ((max = maxScore.get()) < result.getScore() && !maxScore.compareAndSet(max, result.getScore()));
+
+    try
+    {
+      sink.write(result);
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Plays the games of a range of indices, splitting the range until every task plays one game
+   */
+  private class GamesTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = -3271547387437468186L;
+
+    private final int from;
+    private final int to;
+    private final long seed;
+    private final ResultSink sink;
+
+    GamesTask(int from, int to, long seed, ResultSink sink)
+    {
+      this.from = from;
+      this.to = to;
+      this.seed = seed;
+      this.sink = sink;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (to - from <= 0) return;
+      if (to - from == 1)
+      {
+        record(play(from, new SplitMixRandom(seed + from).nextLong()), sink);
+        return;
+      }
+
+      int middle = (from + to) >>> 1;
+      invokeAll(new GamesTask(from, middle, seed, sink), new GamesTask(middle, to, seed, sink));
+    }
+  }
+
+  /**
+   * Run a batch simulation from the command line
+   * @param args [games] [threads] [random|greedy] [output .csv or .bin file, or db for the game history]
+   */
+  public static void main(String[] args) throws IOException
+  {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    PlacementPolicy.Factory policy = args.length > 2 && args[2].equals("random") ? RandomPolicy.FACTORY : GreedyPolicy.FACTORY;
+
+    ResultSink sink = ResultSink.NONE;
+    if (args.length > 3 && args[3].equals("db")) sink = new DatabaseResultSink();
+    else if (args.length > 3 && args[3].endsWith(".csv")) sink = new CsvResultSink(new FileWriter(args[3]));
+    else if (args.length > 3) sink = new BinaryResultSink(new FileOutputStream(args[3]));
+
+    int rows = Integer.getInteger("tetris.rows", Grid.DEFAULT_ROWS);
+    int cols = Integer.getInteger("tetris.cols", Grid.DEFAULT_COLS);
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    BatchSimulator simulator = new BatchSimulator(rows, cols, PieceGenerator.Mode.RANDOM, 10000, policy, pool);
+    try
+    {
+      System.out.println(simulator.run(games, 0, sink));
+    }
+    finally
+    {
+      sink.close();
+      pool.shutdown();
+    }
+  }
+}
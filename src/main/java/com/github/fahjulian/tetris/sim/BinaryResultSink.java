@@ -0,0 +1,47 @@
+package com.github.fahjulian.tetris.sim;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes one fixed size big-endian record of {@link #RECORD_SIZE} bytes per game: game (int),
+ * seed (long), score (int), lines (int), pieces (int), ticks (long), nanos (long) and topped out
+ * (byte).
+ */
+public class BinaryResultSink implements ResultSink
+{
+  public static final int RECORD_SIZE;
+
+  private final DataOutputStream out;
+
+  static
+  {
+    RECORD_SIZE = 4 + 8 + 4 + 4 + 4 + 8 + 8 + 1;
+  }
+
+  public BinaryResultSink(OutputStream out)
+  {
+    this.out = new DataOutputStream(new BufferedOutputStream(out));
+  }
+
+  @Override
+  public synchronized void write(GameResult result) throws IOException
+  {
+    out.writeInt(result.getGame());
+    out.writeLong(result.getSeed());
+    out.writeInt(result.getScore());
+    out.writeInt(result.getLines());
+    out.writeInt(result.getPieces());
+    out.writeLong(result.getTicks());
+    out.writeLong(result.getNanos());
+    out.writeBoolean(result.isToppedOut());
+  }
+
+  @Override
+  public synchronized void close() throws IOException
+  {
+    out.close();
+  }
+}
@@ -0,0 +1,34 @@
+package com.github.fahjulian.tetris.sim;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes one line of comma separated values per game, after a header line
+ */
+public class CsvResultSink implements ResultSink
+{
+  private final BufferedWriter out;
+
+  public CsvResultSink(Writer out) throws IOException
+  {
+    this.out = new BufferedWriter(out);
+    this.out.write("game,seed,score,lines,pieces,ticks,nanos,topped_out");
+    this.out.newLine();
+  }
+
+  @Override
+  public synchronized void write(GameResult result) throws IOException
+  {
+    out.write(String.format("%d,%d,%d,%d,%d,%d,%d,%b", result.getGame(), result.getSeed(), result.getScore(), 
+        result.getLines(), result.getPieces(), result.getTicks(), result.getNanos(), result.isToppedOut()));
+    out.newLine();
+  }
+
+  @Override
+  public synchronized void close() throws IOException
+  {
+    out.close();
+  }
+}
@@ -0,0 +1,30 @@
+package com.github.fahjulian.tetris.sim;
+
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.util.Database;
+import com.github.fahjulian.tetris.util.GameRecord;
+
+/**
+ * Adds every game to the history in the database. Games finishing close together are inserted in
+ * one transaction by the database's writer.
+ */
+public class DatabaseResultSink implements ResultSink
+{
+  public DatabaseResultSink()
+  {
+    Database.init();
+  }
+
+  @Override
+  public void write(GameResult result)
+  {
+    Database.recordGame(new GameRecord(System.currentTimeMillis(), result.getScore(), result.getLines(),
+        result.getPieces(), result.getTicks() * 1000 / Engine.TICKS_PER_SECOND, result.getSeed()));
+  }
+
+  @Override
+  public void close()
+  {
+    Database.close();
+  }
+}
@@ -0,0 +1,79 @@
+package com.github.fahjulian.tetris.sim;
+
+/**
+ * The outcome of one simulated game
+ */
+public class GameResult
+{
+  private final int game;
+  private final long seed;
+  private final int score;
+  private final int lines;
+  private final int pieces;
+  private final long ticks;
+  private final long nanos;
+  private final boolean toppedOut;
+
+  /**
+   * Constructs a new game result
+   * @param game Index of the game in its batch
+   * @param seed Seed of the game's tile sequence
+   * @param score Final score
+   * @param lines Amount of cleared rows
+   * @param pieces Amount of locked tiles
+   * @param ticks Duration of the game in game time, see {@code Engine#TICKS_PER_SECOND}
+   * @param nanos Wall clock time it took to simulate the game
+   * @param toppedOut Whether the game was lost, or stopped at the piece limit
+   */
+  public GameResult(int game, long seed, int score, int lines, int pieces, long ticks, long nanos, boolean toppedOut)
+  {
+    this.game = game;
+    this.seed = seed;
+    this.score = score;
+    this.lines = lines;
+    this.pieces = pieces;
+    this.ticks = ticks;
+    this.nanos = nanos;
+    this.toppedOut = toppedOut;
+  }
+
+  public int getGame()
+  {
+    return game;
+  }
+
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  public int getScore()
+  {
+    return score;
+  }
+
+  public int getLines()
+  {
+    return lines;
+  }
+
+  public int getPieces()
+  {
+    return pieces;
+  }
+
+  public long getTicks()
+  {
+    return ticks;
+  }
+
+  public long getNanos()
+  {
+    return nanos;
+  }
+
+  public boolean isToppedOut()
+  {
+    return toppedOut;
+  }
+}
@@ -0,0 +1,45 @@
+package com.github.fahjulian.tetris.sim;
+
+import com.github.fahjulian.tetris.engine.Board;
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.gameobject.Tile;
+
+/**
+ * Places every tile where its lowest cell lands as deep as possible
+ */
+public class GreedyPolicy implements PlacementPolicy
+{
+  public static final PlacementPolicy.Factory FACTORY = new PlacementPolicy.Factory() {
+    @Override
+    public PlacementPolicy create(long seed)
+    {
+      return new GreedyPolicy();
+    }
+  };
+
+  @Override
+  public void choose(Engine engine, Placement placement)
+  {
+    Board board = engine.getBoard();
+    Tile tile = engine.getCurrentTile();
+    int startRow = engine.getTileRow();
+    int bestDepth = Integer.MIN_VALUE;
+    placement.set(engine.getTileRotation(), engine.getTileCol());
+
+    for (int rotation = 0; rotation < 4; rotation++)
+      for (int col = -tile.getMinCol(rotation); col + tile.getMaxCol(rotation) < engine.getCols(); col++)
+      {
+        if (board.collides(tile, rotation, col, startRow)) continue;
+
+        int row = startRow;
+        while (!board.collides(tile, rotation, col, row + 1)) row++;
+
+        int depth = row + tile.getMaxRow(rotation);
+        if (depth > bestDepth)
+        {
+          bestDepth = depth;
+          placement.set(rotation, col);
+        }
+      }
+  }
+}
@@ -0,0 +1,33 @@
+package com.github.fahjulian.tetris.sim;
+
+/**
+ * Where to place a tile, given as the rotation state and the column of the top-left corner of the
+ * tile's 4x4 shape. Mutable, so policies can fill in the same instance for every tile.
+ */
+public class Placement
+{
+  private int rotation;
+  private int col;
+
+  public void set(int rotation, int col)
+  {
+    this.rotation = rotation;
+    this.col = col;
+  }
+
+  public int getRotation()
+  {
+    return rotation;
+  }
+
+  public int getCol()
+  {
+    return col;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("Placement(rotation: %d, col: %d)", rotation, col);
+  }
+}
@@ -0,0 +1,30 @@
+package com.github.fahjulian.tetris.sim;
+
+import com.github.fahjulian.tetris.engine.Engine;
+
+/**
+ * Decides where to place the current tile of a game. A policy is only ever used by one game at a
+ * time, so it can keep scratch state without synchronizing.
+ */
+public interface PlacementPolicy
+{
+  /**
+   * Creates a policy for every simulated game
+   */
+  public static interface Factory
+  {
+    /**
+     * Create the policy for one game
+     * @param seed Seed for policies making random decisions
+     * @return A new policy
+     */
+    public PlacementPolicy create(long seed);
+  }
+
+  /**
+   * Choose where to place the current tile of a game
+   * @param engine The game, which must not be modified
+   * @param placement The placement to fill in
+   */
+  public void choose(Engine engine, Placement placement);
+}
@@ -0,0 +1,36 @@
+package com.github.fahjulian.tetris.sim;
+
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.gameobject.Tile;
+import com.github.fahjulian.tetris.util.SplitMixRandom;
+
+/**
+ * Places every tile with a random rotation in a random column
+ */
+public class RandomPolicy implements PlacementPolicy
+{
+  public static final PlacementPolicy.Factory FACTORY = new PlacementPolicy.Factory() {
+    @Override
+    public PlacementPolicy create(long seed)
+    {
+      return new RandomPolicy(seed);
+    }
+  };
+
+  private final SplitMixRandom random;
+
+  public RandomPolicy(long seed)
+  {
+    this.random = new SplitMixRandom(seed);
+  }
+
+  @Override
+  public void choose(Engine engine, Placement placement)
+  {
+    Tile tile = engine.getCurrentTile();
+    int rotation = random.nextInt(4);
+    int minCol = -tile.getMinCol(rotation);
+    int maxCol = engine.getCols() - 1 - tile.getMaxCol(rotation);
+    placement.set(rotation, minCol + random.nextInt(maxCol - minCol + 1));
+  }
+}
@@ -0,0 +1,22 @@
+package com.github.fahjulian.tetris.sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives the result of every game of a simulation as soon as it finishes. Called from many
+ * threads at once.
+ */
+public interface ResultSink extends Closeable
+{
+  /** Sink dropping all results */
+  public static final ResultSink NONE = new ResultSink() {
+    @Override
+    public void write(GameResult result) {}
+
+    @Override
+    public void close() {}
+  };
+
+  public void write(GameResult result) throws IOException;
+}
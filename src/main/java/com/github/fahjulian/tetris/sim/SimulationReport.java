@@ -0,0 +1,75 @@
+package com.github.fahjulian.tetris.sim;
+
+/**
+ * Totals and throughput of a whole simulation
+ */
+public class SimulationReport
+{
+  private final int games;
+  private final long pieces;
+  private final long lines;
+  private final long totalScore;
+  private final int maxScore;
+  private final long nanos;
+
+  public SimulationReport(int games, long pieces, long lines, long totalScore, int maxScore, long nanos)
+  {
+    this.games = games;
+    this.pieces = pieces;
+    this.lines = lines;
+    this.totalScore = totalScore;
+    this.maxScore = maxScore;
+    this.nanos = nanos;
+  }
+
+  public int getGames()
+  {
+    return games;
+  }
+
+  public long getPieces()
+  {
+    return pieces;
+  }
+
+  public long getLines()
+  {
+    return lines;
+  }
+
+  public double getAverageScore()
+  {
+    return games == 0 ? 0 : (double) totalScore / games;
+  }
+
+  public int getMaxScore()
+  {
+    return maxScore;
+  }
+
+  /**
+   * Get the wall clock time the simulation took
+   * @return Duration in nanoseconds
+   */
+  public long getNanos()
+  {
+    return nanos;
+  }
+
+  public double getGamesPerSecond()
+  {
+    return games / (nanos / 1e9);
+  }
+
+  public double getPiecesPerSecond()
+  {
+    return pieces / (nanos / 1e9);
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("%d games, %d pieces, %d lines in %.2fs (%.1f games/s, %.0f pieces/s), average score %.1f, max score %d", 
+        games, pieces, lines, nanos / 1e9, getGamesPerSecond(), getPiecesPerSecond(), getAverageScore(), maxScore);
+  }
+}
@@ -0,0 +1,73 @@
+package com.github.fahjulian.tetris.ui;
+
+import com.github.fahjulian.tetris.gameobject.Block;
+import com.github.fahjulian.tetris.gameobject.Tile;
+
+import java.awt.Graphics;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The blocks of every {@code Tile} pre-rendered side by side into one image at a fixed size, so
+ * rendering a block is a single blit
+ */
+public class BlockAtlas
+{
+  private static final Map<Integer, BlockAtlas> atlases;
+
+  private final int size;
+  private final BufferedImage image;
+
+  static
+  {
+    atlases = new HashMap<Integer, BlockAtlas>();
+  }
+
+  /**
+   * Get the atlas for a block size, rendering it on first use
+   * @param size Size of a block
+   * @return The shared atlas
+   */
+  public static synchronized BlockAtlas get(int size)
+  {
+    BlockAtlas atlas = atlases.get(size);
+    if (atlas == null)
+    {
+      atlas = new BlockAtlas(size);
+      atlases.put(size, atlas);
+    }
+    return atlas;
+  }
+
+  private BlockAtlas(int size)
+  {
+    Tile[] tiles = Tile.values();
+    this.size = size;
+    this.image = Images.createCompatible(tiles.length * size, size, Transparency.OPAQUE);
+
+    Graphics g = image.createGraphics();
+    for (Tile tile: tiles)
+      Block.render(g, tile.ordinal() * size, 0, size, tile.color);
+    g.dispose();
+  }
+
+  /**
+   * Render a block of a tile
+   * @param g The graphics to render to
+   * @param tile The tile the block belongs to
+   * @param x X coordinate of the top-left corner
+   * @param y Y coordinate of the top-left corner
+   */
+  public void render(Graphics g, Tile tile, int x, int y)
+  {
+    int sx = tile.ordinal() * size;
+    g.drawImage(image, x, y, x + size, y + size, sx, 0, sx + size, size, null);
+  }
+
+  public int getSize()
+  {
+    return size;
+  }
+}
@@ -0,0 +1,141 @@
+package com.github.fahjulian.tetris.ui;
+
+import javax.swing.JComponent;
+
+import java.awt.Rectangle;
+
+/**
+ * The areas of a frame that changed since it was last painted. Holds a few rectangles without
+ * creating any objects and merges them into their bounds once there are too many.
+ */
+public class DirtyRegion
+{
+  private static final int MAX_RECTS;
+
+  private final int[] rects;
+  private final Rectangle rect;
+  private int count;
+  private boolean full;
+  private int offsetX;
+  private int offsetY;
+
+  static
+  {
+    MAX_RECTS = 8;
+  }
+
+  public DirtyRegion()
+  {
+    this.rects = new int[MAX_RECTS * 4];
+    this.rect = new Rectangle();
+  }
+
+  /**
+   * Set the offset added to all rectangles added from now on, e.g. the position of a layer
+   * @param x Offset on the x axis
+   * @param y Offset on the y axis
+   */
+  public void setOffset(int x, int y)
+  {
+    offsetX = x;
+    offsetY = y;
+  }
+
+  /**
+   * Mark a rectangle as changed
+   * @param x X coordinate of the top-left corner
+   * @param y Y coordinate of the top-left corner
+   * @param width Width of the rectangle
+   * @param height Height of the rectangle
+   */
+  public void add(int x, int y, int width, int height)
+  {
+    if (full || width <= 0 || height <= 0) return;
+    x += offsetX;
+    y += offsetY;
+
+    if (count == MAX_RECTS)
+    {
+      // Merge everything into the bounds and start over with that one rectangle
+      int x1 = x, y1 = y, x2 = x + width, y2 = y + height;
+      for (int i = 0; i < count * 4; i += 4)
+      {
+        x1 = Math.min(x1, rects[i]);
+        y1 = Math.min(y1, rects[i + 1]);
+        x2 = Math.max(x2, rects[i] + rects[i + 2]);
+        y2 = Math.max(y2, rects[i + 1] + rects[i + 3]);
+      }
+      count = 0;
+      x = x1;
+      y = y1;
+      width = x2 - x1;
+      height = y2 - y1;
+    }
+
+    int i = count++ * 4;
+    rects[i] = x;
+    rects[i + 1] = y;
+    rects[i + 2] = width;
+    rects[i + 3] = height;
+  }
+
+  /**
+   * Mark everything as changed
+   */
+  public void addAll()
+  {
+    full = true;
+    count = 0;
+  }
+
+  public void clear()
+  {
+    full = false;
+    count = 0;
+  }
+
+  public boolean isFull()
+  {
+    return full;
+  }
+
+  public boolean isEmpty()
+  {
+    return !full && count == 0;
+  }
+
+  /**
+   * Ask Swing to repaint the changed areas of a component. Can be called from any thread.
+   * @param component The component, in whose coordinates the rectangles were added
+   */
+  public void repaint(JComponent component)
+  {
+    if (full)
+      component.repaint();
+    else
+      for (int i = 0; i < count; i++)
+        component.repaint(get(i, rect));
+  }
+
+  /**
+   * Get the amount of changed rectangles, which is 0 if everything changed
+   * @return The amount of rectangles
+   */
+  public int getCount()
+  {
+    return count;
+  }
+
+  /**
+   * Get a changed rectangle
+   * @param index Index of the rectangle, below {@link #getCount()}
+   * @param rect The rectangle to copy the bounds into
+   * @return {@code rect}
+   */
+  public Rectangle get(int index, Rectangle rect)
+  {
+    int i = index * 4;
+    rect.setBounds(rects[i], rects[i + 1], rects[i + 2], rects[i + 3]);
+    return rect;
+  }
+}
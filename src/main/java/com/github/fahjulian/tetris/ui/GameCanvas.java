@@ -0,0 +1,152 @@
+package com.github.fahjulian.tetris.ui;
+
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders layers actively: {@link #render()} paints all of them into a back buffer and shows it
+ * right away on the calling thread, instead of asking the event dispatch thread to repaint. As
+ * long as the back buffer keeps its contents between frames, only the areas the layers report as
+ * dirty are painted again.
+ */
+public class GameCanvas extends Canvas
+{
+  private static final long serialVersionUID = -3519826384211935624L;
+
+  private static final int BUFFERS;
+
+  private final List<Layer> layers;
+  private final List<int[]> offsets;
+  private final DirtyRegion dirty;
+  private final Rectangle rect;
+  /** Whether the back buffer holds the last frame */
+  private boolean painted;
+
+  static
+  {
+    BUFFERS = 2;
+  }
+
+  /**
+   * Constructs a new canvas
+   * @param width Width of the canvas
+   * @param height Height of the canvas
+   */
+  public GameCanvas(int width, int height)
+  {
+    this.layers = new ArrayList<Layer>();
+    this.offsets = new ArrayList<int[]>();
+    this.dirty = new DirtyRegion();
+    this.rect = new Rectangle();
+
+    setPreferredSize(new Dimension(width, height));
+    // Painted by the game loop only, and key events are handled by the window
+    setIgnoreRepaint(true);
+    setFocusable(false);
+  }
+
+  /**
+   * Add a layer on top of the previously added ones
+   * @param layer The layer
+   * @param x X coordinate of the layer's top-left corner
+   * @param y Y coordinate of the layer's top-left corner
+   */
+  public void addLayer(Layer layer, int x, int y)
+  {
+    layers.add(layer);
+    offsets.add(new int[] { x, y });
+  }
+
+  /**
+   * Paint the dirty areas of all layers and show them. Does nothing until the canvas is displayable.
+   */
+  public void render()
+  {
+    if (!isDisplayable()) return;
+    BufferStrategy strategy = getBufferStrategy();
+    if (strategy == null)
+    {
+      createBufferStrategy(BUFFERS);
+      strategy = getBufferStrategy();
+    }
+
+    dirty.clear();
+    for (int i = 0; i < layers.size(); i++)
+    {
+      int[] offset = offsets.get(i);
+      dirty.setOffset(offset[0], offset[1]);
+      layers.get(i).collectDirty(dirty);
+    }
+    boolean all = !painted || dirty.isFull() || !keepsContents(strategy.getCapabilities());
+
+    // The buffers may be lost at any time, e.g. when the display mode changes
+    do
+    {
+      do
+      {
+        Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_LCD_HRGB);
+        if (all)
+          paint(g, 0, 0, getWidth(), getHeight());
+        else
+          for (int i = 0; i < dirty.getCount(); i++)
+          {
+            dirty.get(i, rect);
+            paint(g, rect.x, rect.y, rect.width, rect.height);
+          }
+        g.dispose();
+
+        // If the buffer has to be painted again, its old contents are gone
+        all = true;
+      }
+      while (strategy.contentsRestored());
+
+      strategy.show();
+    }
+    while (strategy.contentsLost());
+
+    painted = true;
+    Toolkit.getDefaultToolkit().sync();
+  }
+
+  /**
+   * Paint an area of all layers
+   * @param g The graphics of the back buffer
+   * @param x X coordinate of the area
+   * @param y Y coordinate of the area
+   * @param width Width of the area
+   * @param height Height of the area
+   */
+  private void paint(Graphics2D g, int x, int y, int width, int height)
+  {
+    g.setClip(x, y, width, height);
+    g.setColor(getBackground());
+    g.fillRect(x, y, width, height);
+    for (int i = 0; i < layers.size(); i++)
+    {
+      int[] offset = offsets.get(i);
+      Graphics layer = g.create(offset[0], offset[1], getWidth() - offset[0], getHeight() - offset[1]);
+      layers.get(i).paintLayer(layer);
+      layer.dispose();
+    }
+  }
+
+  /**
+   * Check if a back buffer still holds the last frame after showing it
+   * @param capabilities The capabilities of the buffer strategy
+   * @return Whether the back buffer keeps its contents
+   */
+  private static boolean keepsContents(BufferCapabilities capabilities)
+  {
+    return !capabilities.isPageFlipping() || capabilities.getFlipContents() == BufferCapabilities.FlipContents.COPIED;
+  }
+}
@@ -0,0 +1,58 @@
+package com.github.fahjulian.tetris.ui;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Creates images that are pre-rendered once and then blitted every frame
+ */
+public class Images
+{
+  private Images() {}
+
+  /**
+   * Create an image in the format of the screen, so blitting it needs no conversion and it can be
+   * cached in video memory
+   * @param width Width of the image
+   * @param height Height of the image
+   * @param transparency One of the {@code Transparency} constants
+   * @return The image, a plain {@code BufferedImage} when there is no screen
+   */
+  public static BufferedImage createCompatible(int width, int height, int transparency)
+  {
+    if (GraphicsEnvironment.isHeadless())
+      return new BufferedImage(width, height,
+          transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+
+    return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+        .getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+  }
+
+  /**
+   * Pre-render an empty grid: a white background with light gray lines around every cell
+   * @param rows Amount of rows
+   * @param cols Amount of columns
+   * @param blockSize Size of a cell
+   * @return The image, one pixel wider and higher than the cells for the closing lines
+   */
+  public static BufferedImage createGridBackground(int rows, int cols, int blockSize)
+  {
+    int width = cols * blockSize, height = rows * blockSize;
+    BufferedImage image = createCompatible(width + 1, height + 1, Transparency.BITMASK);
+    Graphics g = image.createGraphics();
+
+    g.setColor(Color.WHITE);
+    g.fillRect(0, 0, width, height);
+    g.setColor(Color.LIGHT_GRAY);
+    for (int row = 0; row < rows + 1; row++)
+      g.fillRect(0, row * blockSize, width, 1);
+    for (int col = 0; col < cols + 1; col++)
+      g.fillRect(col * blockSize, 0, 1, height);
+
+    g.dispose();
+    return image;
+  }
+}
@@ -0,0 +1,21 @@
+package com.github.fahjulian.tetris.ui;
+
+import java.awt.Graphics;
+
+/**
+ * Something that can paint itself onto any {@code Graphics}, e.g. a {@code GameCanvas}'s back buffer
+ */
+public interface Layer
+{
+  /**
+   * Paint the layer. Only the clip of {@code g} has to be painted.
+   * @param g The graphics to paint to, translated to the layer's top-left corner
+   */
+  public void paintLayer(Graphics g);
+
+  /**
+   * Add the areas of the layer that changed since the last call, in the layer's coordinates
+   * @param region The region to add the changed areas to
+   */
+  public void collectDirty(DirtyRegion region);
+}
@@ -0,0 +1,144 @@
+package com.github.fahjulian.tetris.ui;
+
+import com.github.fahjulian.tetris.gameobject.Tile;
+import com.github.fahjulian.tetris.util.GameState;
+
+/**
+ * Everything visible of a game at one point in time. Filled in by a {@code SnapshotBuffer} and
+ * never changed while a renderer can read it.
+ */
+public class RenderSnapshot
+{
+  private static final Tile[] TILES;
+
+  private final int rows;
+  private final int cols;
+  /** The board's cells, row after row, as the tile's ordinal + 1, or 0 if empty */
+  final byte[] cells;
+  /** How often every row had changed when it was last copied */
+  final long[] rowVersions;
+  /** The amount of blocks in every row */
+  final int[] rowFills;
+
+  long sequence;
+  Tile currentTile;
+  int tileRotation;
+  int tileCol;
+  int tileRow;
+  Tile nextTile;
+  int score;
+  int highscore;
+  int gameoverScore;
+  GameState state;
+
+  static
+  {
+    TILES = Tile.values();
+  }
+
+  RenderSnapshot(int rows, int cols)
+  {
+    this.rows = rows;
+    this.cols = cols;
+    this.cells = new byte[rows * cols];
+    this.rowVersions = new long[rows];
+    this.rowFills = new int[rows];
+  }
+
+  /**
+   * Get the tile a block on the board came from
+   * @param row Row of the cell
+   * @param col Column of the cell
+   * @return The {@code Tile}, or {@code null} if the cell is empty
+   */
+  public Tile getTile(int row, int col)
+  {
+    int cell = cells[row * cols + col];
+    return cell == 0 ? null : TILES[cell - 1];
+  }
+
+  /**
+   * Get how often a row of the board has changed. Rows with the same version in two snapshots are
+   * the same.
+   * @param row The row
+   * @return The version of the row
+   */
+  public long getRowVersion(int row)
+  {
+    return rowVersions[row];
+  }
+
+  /**
+   * Get the amount of blocks in a row, e.g. to skip empty rows
+   * @param row The row
+   * @return The amount of blocks
+   */
+  public int getRowFill(int row)
+  {
+    return rowFills[row];
+  }
+
+  /**
+   * Get the position of this snapshot among all snapshots of its buffer
+   * @return The sequence number, starting at 1
+   */
+  public long getSequence()
+  {
+    return sequence;
+  }
+
+  public Tile getCurrentTile()
+  {
+    return currentTile;
+  }
+
+  public int getTileRotation()
+  {
+    return tileRotation;
+  }
+
+  public int getTileCol()
+  {
+    return tileCol;
+  }
+
+  public int getTileRow()
+  {
+    return tileRow;
+  }
+
+  public Tile getNextTile()
+  {
+    return nextTile;
+  }
+
+  public int getScore()
+  {
+    return score;
+  }
+
+  public int getHighscore()
+  {
+    return highscore;
+  }
+
+  public int getGameoverScore()
+  {
+    return gameoverScore;
+  }
+
+  public GameState getState()
+  {
+    return state;
+  }
+
+  public int getRows()
+  {
+    return rows;
+  }
+
+  public int getCols()
+  {
+    return cols;
+  }
+}
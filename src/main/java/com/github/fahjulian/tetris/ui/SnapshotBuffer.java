@@ -0,0 +1,149 @@
+package com.github.fahjulian.tetris.ui;
+
+import com.github.fahjulian.tetris.engine.Board;
+import com.github.fahjulian.tetris.engine.BoardStatistics;
+import com.github.fahjulian.tetris.engine.Engine;
+import com.github.fahjulian.tetris.gameobject.Tile;
+import com.github.fahjulian.tetris.util.GameState;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands snapshots of a game from the thread simulating it to the thread rendering it without any
+ * locks. Of three snapshots, the simulation fills one, the renderer reads one and the third is
+ * the latest complete one, which is swapped with either of them atomically.
+ */
+public class SnapshotBuffer
+{
+  /** Set in {@link #latest} while the latest snapshot has not been acquired yet */
+  private static final int FRESH;
+  private static final int INDEX;
+
+  private final RenderSnapshot[] snapshots;
+  /** The index of the latest complete snapshot, and whether it is fresh */
+  private final AtomicInteger latest;
+  /** How often every row of the board has changed */
+  private final long[] rowVersions;
+  /** The range of rows every snapshot may be out of date in, empty if top > bottom */
+  private final int[] staleTop;
+  private final int[] staleBottom;
+
+  // Only used by the simulating thread
+  private int back;
+  private RenderSnapshot published;
+  private long sequence;
+
+  // Only used by the rendering thread
+  private int front;
+
+  static
+  {
+    FRESH = 4;
+    INDEX = 3;
+  }
+
+  /**
+   * Constructs a new buffer without any published snapshot
+   * @param rows Amount of rows of the board
+   * @param cols Amount of columns of the board
+   */
+  public SnapshotBuffer(int rows, int cols)
+  {
+    this.snapshots = new RenderSnapshot[] {
+      new RenderSnapshot(rows, cols), new RenderSnapshot(rows, cols), new RenderSnapshot(rows, cols) };
+    this.rowVersions = new long[rows];
+    this.staleTop = new int[] { rows, rows, rows };
+    this.staleBottom = new int[] { -1, -1, -1 };
+    this.front = 0;
+    this.latest = new AtomicInteger(1);
+    this.back = 2;
+  }
+
+  /**
+   * Take a snapshot of a game and make it the latest. May only be called by one thread, which
+   * has to be the one changing the game. Consumes the damage of the game's board and only copies
+   * the changed rows that are not empty, so it takes time in the amount of changed rows.
+   * @param engine The game
+   * @param state The state of the game
+   * @param highscore The highscore to show
+   * @param gameoverScore The score to show when the game is over
+   * @return The published snapshot, which may be read by the calling thread until the next call
+   */
+  public RenderSnapshot publish(Engine engine, GameState state, int highscore, int gameoverScore)
+  {
+    RenderSnapshot snapshot = snapshots[back];
+    Board board = engine.getBoard();
+    BoardStatistics statistics = board.getStatistics();
+    int cols = snapshot.getCols();
+
+    int damageTop = board.getDamageTop(), damageBottom = board.getDamageBottom();
+    board.clearDamage();
+    if (damageTop <= damageBottom)
+    {
+      for (int row = damageTop; row <= damageBottom; row++)
+        rowVersions[row]++;
+      for (int i = 0; i < snapshots.length; i++)
+      {
+        staleTop[i] = Math.min(staleTop[i], damageTop);
+        staleBottom[i] = Math.max(staleBottom[i], damageBottom);
+      }
+    }
+
+    // Copy only the rows changed since this snapshot was last filled
+    for (int row = staleTop[back]; row <= staleBottom[back]; row++)
+    {
+      if (snapshot.rowVersions[row] == rowVersions[row]) continue;
+      int fill = statistics.getRowFill(row);
+      if (fill != 0 || snapshot.rowFills[row] != 0)
+      {
+        for (int col = 0; col < cols; col++)
+        {
+          Tile tile = board.getTile(row, col);
+          snapshot.cells[row * cols + col] = (byte) (tile == null ? 0 : tile.ordinal() + 1);
+        }
+      }
+      snapshot.rowFills[row] = fill;
+      snapshot.rowVersions[row] = rowVersions[row];
+    }
+    staleTop[back] = snapshot.getRows();
+    staleBottom[back] = -1;
+
+    snapshot.sequence = ++sequence;
+    snapshot.currentTile = engine.getCurrentTile();
+    snapshot.tileRotation = engine.getTileRotation();
+    snapshot.tileCol = engine.getTileCol();
+    snapshot.tileRow = engine.getTileRow();
+    snapshot.nextTile = engine.getNextTile();
+    snapshot.score = engine.getScore();
+    snapshot.highscore = highscore;
+    snapshot.gameoverScore = gameoverScore;
+    snapshot.state = state;
+
+    // Publishes the writes above along with the index
+    back = latest.getAndSet(back | FRESH) & INDEX;
+    published = snapshot;
+    return snapshot;
+  }
+
+  /**
+   * Get the snapshot published last. May only be called by the publishing thread.
+   * @return The snapshot, or {@code null} if none was published yet
+   */
+  public RenderSnapshot getPublished()
+  {
+    return published;
+  }
+
+  /**
+   * Get the latest snapshot for rendering. May only be called by one thread, and the snapshot
+   * may be read until the next call.
+   * @return The snapshot, or {@code null} if none was published yet
+   */
+  public RenderSnapshot acquire()
+  {
+    if ((latest.get() & FRESH) != 0)
+      front = latest.getAndSet(front) & INDEX;
+    RenderSnapshot snapshot = snapshots[front];
+    return snapshot.sequence == 0 ? null : snapshot;
+  }
+}
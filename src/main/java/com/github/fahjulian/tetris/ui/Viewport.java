@@ -0,0 +1,117 @@
+package com.github.fahjulian.tetris.ui;
+
+/**
+ * The part of a board shown on screen. Boards too large to fit are first shown with smaller
+ * blocks, down to {@link #MIN_BLOCKSIZE}, and beyond that scrolled to follow the current tile.
+ */
+public class Viewport
+{
+  /** The smallest size of a block before the board is scrolled instead */
+  public static final int MIN_BLOCKSIZE;
+
+  private final int rows;
+  private final int cols;
+  private final int blockSize;
+  private final int visibleRows;
+  private final int visibleCols;
+
+  static
+  {
+    MIN_BLOCKSIZE = 8;
+  }
+
+  /**
+   * Constructs a new viewport
+   * @param rows Amount of rows of the board
+   * @param cols Amount of columns of the board
+   * @param blockSize Size of a block if the board fits
+   * @param maxWidth The maximum width of the shown part of the board
+   * @param maxHeight The maximum height of the shown part of the board
+   */
+  public Viewport(int rows, int cols, int blockSize, int maxWidth, int maxHeight)
+  {
+    this.rows = rows;
+    this.cols = cols;
+    this.blockSize = Math.max(Math.min(blockSize, Math.min(maxWidth / cols, maxHeight / rows)), MIN_BLOCKSIZE);
+    this.visibleRows = Math.min(rows, Math.max(maxHeight / this.blockSize, 1));
+    this.visibleCols = Math.min(cols, Math.max(maxWidth / this.blockSize, 1));
+  }
+
+  /**
+   * Get the topmost row shown for a snapshot
+   * @param snapshot The snapshot
+   * @return The row
+   */
+  public int getTopRow(RenderSnapshot snapshot)
+  {
+    return follow(snapshot.getTileRow(), visibleRows, rows);
+  }
+
+  /**
+   * Get the leftmost column shown for a snapshot
+   * @param snapshot The snapshot
+   * @return The column
+   */
+  public int getLeftCol(RenderSnapshot snapshot)
+  {
+    return follow(snapshot.getTileCol(), visibleCols, cols);
+  }
+
+  /**
+   * Find the first shown row or column. Moves in steps of half the shown ones, so the view does
+   * not scroll with every move of the tile, and only depends on the tile's position, so every
+   * thread looking at the same snapshot sees the same part of the board.
+   * @param position The position of the tile
+   * @param visible The amount of shown rows or columns
+   * @param total The amount of rows or columns of the board
+   * @return The first shown row or column
+   */
+  private static int follow(int position, int visible, int total)
+  {
+    if (visible >= total) return 0;
+    int step = Math.max(visible / 2, 1);
+    int first = Math.max(position - step / 2, 0) / step * step;
+    return Math.min(first, total - visible);
+  }
+
+  public int getBlockSize()
+  {
+    return blockSize;
+  }
+
+  public int getVisibleRows()
+  {
+    return visibleRows;
+  }
+
+  public int getVisibleCols()
+  {
+    return visibleCols;
+  }
+
+  /**
+   * @return The width of the shown part of the board
+   */
+  public int getWidth()
+  {
+    return visibleCols * blockSize;
+  }
+
+  /**
+   * @return The height of the shown part of the board
+   */
+  public int getHeight()
+  {
+    return visibleRows * blockSize;
+  }
+
+  public int getRows()
+  {
+    return rows;
+  }
+
+  public int getCols()
+  {
+    return cols;
+  }
+}
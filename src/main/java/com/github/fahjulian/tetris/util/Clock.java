@@ -1,11 +1,22 @@
 package com.github.fahjulian.tetris.util;
 
 public class Clock {
+  private final TimeSource timeSource;
   private long start;
 
   public Clock() 
   {
-    start = System.nanoTime();
+    this(TimeSource.SYSTEM);
+  }
+
+  /**
+   * Constructs a new clock reading its time from the given source
+   * @param timeSource The source of the time
+   */
+  public Clock(TimeSource timeSource)
+  {
+    this.timeSource = timeSource;
+    start = timeSource.nanoTime();
   }
 
   /**
@@ -14,7 +25,7 @@ public class Clock {
    */
   public int peekDuration()
   {
-    return (int)((System.nanoTime() - start) / 1e6);
+    return (int)((timeSource.nanoTime() - start) / 1e6);
   }
 
   /**
@@ -23,17 +34,31 @@ public class Clock {
    */
   public int getDuration()
   {
-    long now = System.nanoTime();
+    long now = timeSource.nanoTime();
     int duration = (int)((now - start) / 1e6);
     start = now;
     return duration;
   }
 
+  /**
+   * Get the amount of whole ticks passed since last time and advance the timer by exactly that
+   * many ticks, so fractions of a tick are carried over to the next request.
+   * @param ticksPerSecond Length of a tick
+   * @return Amount of whole ticks passed since last request
+   */
+  public int getTicks(int ticksPerSecond)
+  {
+    long tickLength = 1000000000L / ticksPerSecond;
+    long ticks = (timeSource.nanoTime() - start) / tickLength;
+    start += ticks * tickLength;
+    return (int) Math.min(ticks, Integer.MAX_VALUE);
+  }
+
   /**
    * Reset the timer.
    */
   public void reset()
   {
-    start = System.nanoTime();
+    start = timeSource.nanoTime();
   }
 }
@@ -1,103 +1,420 @@
 package com.github.fahjulian.tetris.util;
 
+import com.github.fahjulian.tetris.metrics.Metrics;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
-public class Database 
+/**
+ * Persists the highscore and the history of all finished games in a SQLite database. Keeps one
+ * connection for writing and one for reading open for the whole run, and writes behind on a
+ * background thread, so saving never touches the disk on the calling thread. The database is
+ * journaled with a write-ahead log, so reads never wait for writes.
+ */
+public class Database
 {
-  public static void init()
+  private static final String URL;
+  /** The version of the schema created by {@link #migrate(Statement, int)}, see {@code PRAGMA user_version} */
+  private static final int SCHEMA_VERSION;
+  /** Value of {@link #pendingHighscore} while there is nothing to write */
+  private static final int NONE;
+  private static final long MILLIS_PER_DAY;
+  /** The time the writer waits after a failed write before it tries again */
+  private static final long RETRY_NANOS;
+
+  private static Connection connection;
+  private static Connection readConnection;
+  private static PreparedStatement selectHighscore;
+  private static PreparedStatement updateHighscore;
+  private static PreparedStatement insertGame;
+  private static PreparedStatement selectTopGames;
+  private static PreparedStatement selectTopGamesOfDay;
+  /** Guards the statements of {@link #readConnection} */
+  private static final Object readLock;
+  private static Thread writer;
+  private static volatile boolean running;
+  /** The highest highscore not written yet, merging all saves since the last write */
+  private static final AtomicInteger pendingHighscore;
+  /** The games not written yet, all inserted in one transaction by the next write */
+  private static final Queue<GameRecord> pendingGames;
+
+  static
   {
-    Connection c = null;
-    Statement stmt = null;
+    URL = "jdbc:sqlite:./.tetris.sqlite";
+    SCHEMA_VERSION = 1;
+    NONE = -1;
+    MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    RETRY_NANOS = 1000000000L;
+    readLock = new Object();
+    pendingHighscore = new AtomicInteger(NONE);
+    pendingGames = new ConcurrentLinkedQueue<GameRecord>();
+  }
+
+  /**
+   * Open the database, create or migrate the tables if needed and start writing behind. Flushes
+   * and closes the database when the JVM shuts down.
+   */
+  public static synchronized void init()
+  {
+    if (connection != null) return;
 
     try
     {
       Class.forName("org.sqlite.JDBC");
-      // Class.forName("org.xerial.sqlite-jdbc");
-      c = DriverManager.getConnection("jdbc:sqlite:./.tetris.sqlite");
-      c.setAutoCommit(false);
-      stmt = c.createStatement();
-
-      stmt = c.createStatement();
-      String sql = "CREATE TABLE IF NOT EXISTS TETRIS " + 
-                    "(ID INT PRIMARY KEY    NOT NULL," + 
-                    " HIGHSCORE      INT    NOT NULL);";
-      stmt.executeUpdate(sql);
-      c.commit();
-      
-      ResultSet rs = stmt.executeQuery("SELECT * FROM TETRIS");
-      // Check if it is a new game
-      if (!rs.next())
-      {
-        sql = "INSERT INTO TETRIS (ID, HIGHSCORE) VALUES (0, 0);";
-        stmt.executeUpdate(sql);
-        c.commit();
-      }
+      Properties config = new Properties();
+      config.setProperty("journal_mode", "WAL");
+      config.setProperty("synchronous", "NORMAL");
+      connection = DriverManager.getConnection(URL, config);
+      connection.setAutoCommit(false);
 
+      Statement stmt = connection.createStatement();
+      ResultSet rs = stmt.executeQuery("PRAGMA user_version;");
+      int version = rs.next() ? rs.getInt(1) : 0;
       rs.close();
+      migrate(stmt, version);
+      connection.commit();
       stmt.close();
-      c.close();
-    } 
+
+      updateHighscore = connection.prepareStatement("UPDATE TETRIS SET HIGHSCORE = ? WHERE ID = 0 AND HIGHSCORE < ?;");
+      insertGame = connection.prepareStatement("INSERT INTO GAMES (PLAYED_AT, DAY, SCORE, LINES, PIECES, DURATION, SEED) " +
+                                               "VALUES (?, ?, ?, ?, ?, ?, ?);");
+
+      // Reads see every committed write right away and are served by the indexes
+      readConnection = DriverManager.getConnection(URL, config);
+      selectHighscore = readConnection.prepareStatement("SELECT HIGHSCORE FROM TETRIS WHERE ID = 0;");
+      String columns = "SELECT PLAYED_AT, SCORE, LINES, PIECES, DURATION, SEED FROM GAMES ";
+      selectTopGames = readConnection.prepareStatement(columns + "ORDER BY SCORE DESC LIMIT ?;");
+      selectTopGamesOfDay = readConnection.prepareStatement(columns + "WHERE DAY = ? ORDER BY SCORE DESC LIMIT ?;");
+    }
     catch (Exception e)
     {
       e.printStackTrace();
+      return;
     }
+
+    running = true;
+    writer = new Thread("tetris-database") {
+      @Override
+      public void run()
+      {
+        writeBehind();
+      }
+    };
+    writer.setDaemon(true);
+    writer.start();
+
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      @Override
+      public void run()
+      {
+        close();
+      }
+    });
   }
 
-  public static void saveHighscore(int highscore)
+  /**
+   * Bring the schema up to {@link #SCHEMA_VERSION}
+   * @param stmt A statement of the write connection, inside the migration's transaction
+   * @param version The current version of the schema, 0 for a new database or one with only the
+   *                single-row highscore table
+   */
+  private static void migrate(Statement stmt, int version) throws SQLException
   {
-    Connection c = null;
-    Statement stmt = null;
-
-    try
+    if (version < 1)
     {
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:./.tetris.sqlite");
-        c.setAutoCommit(false);
-        stmt = c.createStatement();
-
-        String sql = String.format("UPDATE TETRIS set HIGHSCORE = %d where ID=0;", highscore);
-        stmt.executeUpdate(sql);
-        c.commit();
-
-        stmt.close();
-        c.close();
-    } 
-    catch (Exception e)
+      stmt.executeUpdate("CREATE TABLE IF NOT EXISTS TETRIS " +
+                         "(ID INT PRIMARY KEY    NOT NULL," +
+                         " HIGHSCORE      INT    NOT NULL);");
+      stmt.executeUpdate("INSERT OR IGNORE INTO TETRIS (ID, HIGHSCORE) VALUES (0, 0);");
+      stmt.executeUpdate("CREATE TABLE IF NOT EXISTS GAMES " +
+                         "(ID INTEGER PRIMARY KEY AUTOINCREMENT," +
+                         " PLAYED_AT  INTEGER  NOT NULL," +
+                         " DAY        INTEGER  NOT NULL," +
+                         " SCORE      INTEGER  NOT NULL," +
+                         " LINES      INTEGER  NOT NULL," +
+                         " PIECES     INTEGER  NOT NULL," +
+                         " DURATION   INTEGER  NOT NULL," +
+                         " SEED       INTEGER  NOT NULL);");
+      stmt.executeUpdate("CREATE INDEX IF NOT EXISTS GAMES_BY_SCORE ON GAMES (SCORE DESC);");
+      stmt.executeUpdate("CREATE INDEX IF NOT EXISTS GAMES_BY_DAY ON GAMES (DAY, SCORE DESC);");
+    }
+    // Later versions migrate on from here with if (version < 2) and so on
+
+    if (version < SCHEMA_VERSION)
+      stmt.executeUpdate("PRAGMA user_version = " + SCHEMA_VERSION + ";");
+  }
+
+  /**
+   * Save a new highscore. Returns right away, the highscore is written later on a background
+   * thread. Saves made before that write are merged into one.
+   * @param highscore The highscore
+   */
+  public static void saveHighscore(int highscore)
+  {
+    int pending;
+    do
     {
-      e.printStackTrace();
+      pending = pendingHighscore.get();
+      if (pending >= highscore) return;
     }
+    while (!pendingHighscore.compareAndSet(pending, highscore));
+
+    wakeWriter();
+  }
+
+  /**
+   * Add a finished game to the history. Returns right away, the game is written later on a
+   * background thread, together with all other games finished until then.
+   * @param game The game
+   */
+  public static void recordGame(GameRecord game)
+  {
+    pendingGames.add(game);
+    wakeWriter();
   }
 
   public static int getHighscore()
   {
-    Connection c = null;
-    Statement stmt = null;
     int highscore = 0;
 
+    synchronized (readLock)
+    {
+      long start = System.nanoTime();
+      try
+      {
+        ResultSet rs = selectHighscore.executeQuery();
+        rs.next();
+        highscore = rs.getInt("HIGHSCORE");
+        rs.close();
+        Metrics.DATABASE_READ.record(System.nanoTime() - start);
+      }
+      catch (Exception e)
+      {
+        e.printStackTrace();
+        highscore = -1;
+      }
+    }
+
+    return Math.max(highscore, pendingHighscore.get());
+  }
+
+  /**
+   * Get the best games of all time. Games not written yet are not included.
+   * @param limit The maximum amount of games
+   * @return The games, best first
+   */
+  public static List<GameRecord> getTopGames(int limit)
+  {
+    synchronized (readLock)
+    {
+      try
+      {
+        selectTopGames.setInt(1, limit);
+        return readGames(selectTopGames);
+      }
+      catch (Exception e)
+      {
+        e.printStackTrace();
+        return new ArrayList<GameRecord>();
+      }
+    }
+  }
+
+  /**
+   * Get the best games of one day. Games not written yet are not included.
+   * @param day The day, see {@link #toDay(long)}
+   * @param limit The maximum amount of games
+   * @return The games, best first
+   */
+  public static List<GameRecord> getTopGames(long day, int limit)
+  {
+    synchronized (readLock)
+    {
+      try
+      {
+        selectTopGamesOfDay.setLong(1, day);
+        selectTopGamesOfDay.setInt(2, limit);
+        return readGames(selectTopGamesOfDay);
+      }
+      catch (Exception e)
+      {
+        e.printStackTrace();
+        return new ArrayList<GameRecord>();
+      }
+    }
+  }
+
+  /**
+   * Get the day a point in time falls on in the local time zone
+   * @param millis Milliseconds since the epoch
+   * @return The amount of days since the epoch
+   */
+  public static long toDay(long millis)
+  {
+    long local = millis + TimeZone.getDefault().getOffset(millis);
+    return local >= 0 ? local / MILLIS_PER_DAY : (local + 1) / MILLIS_PER_DAY - 1;
+  }
+
+  private static List<GameRecord> readGames(PreparedStatement select) throws SQLException
+  {
+    long start = System.nanoTime();
+    List<GameRecord> games = new ArrayList<GameRecord>();
+    ResultSet rs = select.executeQuery();
+    while (rs.next())
+      games.add(new GameRecord(rs.getLong("PLAYED_AT"), rs.getInt("SCORE"), rs.getInt("LINES"), rs.getInt("PIECES"),
+          rs.getLong("DURATION"), rs.getLong("SEED")));
+    rs.close();
+    Metrics.DATABASE_READ.record(System.nanoTime() - start);
+    return games;
+  }
+
+  /**
+   * Write everything saved so far and close the database
+   */
+  public static void close()
+  {
+    running = false;
+    Thread writer = Database.writer;
+    if (writer != null)
+    {
+      LockSupport.unpark(writer);
+      try
+      {
+        writer.join();
+      }
+      catch (InterruptedException e)
+      {
+        e.printStackTrace();
+      }
+    }
+
+    synchronized (Database.class)
+    {
+      if (connection == null) return;
+      flush();
+      synchronized (readLock)
+      {
+        try
+        {
+          readConnection.close();
+          connection.close();
+        }
+        catch (SQLException e)
+        {
+          e.printStackTrace();
+        }
+      }
+      connection = null;
+      Database.writer = null;
+    }
+  }
+
+  private static void wakeWriter()
+  {
+    Thread writer = Database.writer;
+    if (writer != null) LockSupport.unpark(writer);
+  }
+
+  /**
+   * Run by the writer thread: sleep until something is saved, then write it
+   */
+  private static void writeBehind()
+  {
+    while (running)
+    {
+      if (pendingHighscore.get() == NONE && pendingGames.isEmpty())
+        LockSupport.park(Database.class);
+      else if (!flush())
+        LockSupport.parkNanos(Database.class, RETRY_NANOS);
+    }
+  }
+
+  /**
+   * Write the pending highscore and games in one transaction. The highscore and the games stay
+   * pending until the transaction is committed, so a failed write is rolled back and tried again.
+   * @return Whether the write succeeded
+   */
+  private static synchronized boolean flush()
+  {
+    if (connection == null) return false;
+
+    long start = System.nanoTime();
     try
     {
-      Class.forName("org.sqlite.JDBC");
-      c = DriverManager.getConnection("jdbc:sqlite:./.tetris.sqlite");
-      c.setAutoCommit(false);
-      stmt = c.createStatement();
-
-      ResultSet rs = stmt.executeQuery("SELECT * FROM TETRIS");
-      rs.next();
-      highscore = rs.getInt("HIGHSCORE");
-      
-      rs.close();
-      stmt.close();
-      c.close();
+      int highscore = pendingHighscore.get();
+      if (highscore != NONE)
+      {
+        updateHighscore.setInt(1, highscore);
+        updateHighscore.setInt(2, highscore);
+        updateHighscore.executeUpdate();
+      }
+
+      // Only this thread removes games, so the first ones are still the batched ones after the commit
+      int batched = 0;
+      for (GameRecord game: pendingGames)
+      {
+        insertGame.setLong(1, game.getPlayedAt());
+        insertGame.setLong(2, toDay(game.getPlayedAt()));
+        insertGame.setInt(3, game.getScore());
+        insertGame.setInt(4, game.getLines());
+        insertGame.setInt(5, game.getPieces());
+        insertGame.setLong(6, game.getDuration());
+        insertGame.setLong(7, game.getSeed());
+        insertGame.addBatch();
+        batched++;
+      }
+      if (batched > 0) insertGame.executeBatch();
+
+      connection.commit();
+      // A higher highscore saved meanwhile stays pending
+      pendingHighscore.compareAndSet(highscore, NONE);
+      for (int i = 0; i < batched; i++)
+        pendingGames.poll();
+      Metrics.DATABASE_WRITE.record(System.nanoTime() - start);
+      return true;
     }
-    catch (Exception e)
+    catch (SQLException e)
     {
       e.printStackTrace();
-      highscore = -1;
+      try
+      {
+        insertGame.clearBatch();
+        connection.rollback();
+      }
+      catch (SQLException rollbackFailed)
+      {
+        rollbackFailed.printStackTrace();
+      }
+      return false;
     }
+  }
 
-    return highscore;
+  /**
+   * Print the leaderboards
+   * @param args [amount of games]
+   */
+  public static void main(String[] args)
+  {
+    int limit = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+    init();
+    System.out.println("Highscore: " + getHighscore());
+    System.out.println("Best games of all time:");
+    for (GameRecord game: getTopGames(limit))
+      System.out.println("  " + game);
+    System.out.println("Best games of today:");
+    for (GameRecord game: getTopGames(toDay(System.currentTimeMillis()), limit))
+      System.out.println("  " + game);
   }
 }
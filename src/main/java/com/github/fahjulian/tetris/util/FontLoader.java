@@ -1,23 +1,66 @@
 package com.github.fahjulian.tetris.util;
 
-import java.io.File;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
 
 import java.awt.Font;
 import java.awt.FontFormatException;
 
+/**
+ * Loads TrueType fonts from the classpath, so they are found inside the jar no matter the working
+ * directory. Every font file is read once; all sizes and styles are derived from the cached font.
+ */
 public class FontLoader {
-  public static Font loadTTF(String ttfPath, int style, int fontSize)
-  { 
-    try 
-    {
-      System.out.println(new File(ttfPath).getAbsolutePath());
-      return Font.createFonts(new File(ttfPath))[0].deriveFont(style, fontSize);
-    } 
-    catch(IOException | FontFormatException e)
+  private static final ConcurrentHashMap<String, Font> fonts;
+
+  static
+  {
+    fonts = new ConcurrentHashMap<String, Font>();
+  }
+
+  /**
+   * Load a font. Safe to call from any thread, e.g. to load fonts in the background.
+   * @param resource Absolute path of the font file on the classpath, e.g. {@code /fonts/x.ttf}
+   * @param style The style of the font, e.g. {@link Font#PLAIN}
+   * @param fontSize The size of the font
+   * @return The font, or {@code null} if it cannot be loaded
+   */
+  public static Font loadTTF(String resource, int style, int fontSize)
+  {
+    Font font = fonts.get(resource);
+    if (font == null)
     {
-      e.printStackTrace();
-      return null;
+      InputStream in = FontLoader.class.getResourceAsStream(resource);
+      if (in == null)
+      {
+        new IOException("Font " + resource + " not found on the classpath").printStackTrace();
+        return null;
+      }
+
+      try
+      {
+        font = Font.createFont(Font.TRUETYPE_FONT, new BufferedInputStream(in));
+        fonts.putIfAbsent(resource, font);
+      }
+      catch(IOException | FontFormatException e)
+      {
+        e.printStackTrace();
+        return null;
+      }
+      finally
+      {
+        try
+        {
+          in.close();
+        }
+        catch (IOException e)
+        {
+          e.printStackTrace();
+        }
+      }
     }
+    return font.deriveFont(style, fontSize);
   }
 }
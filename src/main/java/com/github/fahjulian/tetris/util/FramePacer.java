@@ -0,0 +1,73 @@
+package com.github.fahjulian.tetris.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits until a deadline with sub-millisecond accuracy. Sleeps for the coarse part of the wait and
+ * spins for the rest, adapting the spinning part to how much the sleeps overshoot on this machine.
+ */
+public class FramePacer
+{
+  /** The shortest time before a deadline to start spinning */
+  private static final long MIN_SPIN_NANOS;
+  /** The longest time before a deadline to start spinning */
+  private static final long MAX_SPIN_NANOS;
+
+  private final TimeSource timeSource;
+  private long spinNanos;
+  private long lastOvershoot;
+
+  static
+  {
+    MIN_SPIN_NANOS = 100000L;
+    MAX_SPIN_NANOS = 4000000L;
+  }
+
+  public FramePacer()
+  {
+    this(TimeSource.SYSTEM);
+  }
+
+  /**
+   * Constructs a new pacer
+   * @param timeSource Source of the time the deadlines are given in
+   */
+  public FramePacer(TimeSource timeSource)
+  {
+    this.timeSource = timeSource;
+    this.spinNanos = 1000000L;
+  }
+
+  /**
+   * Wait until a deadline. Returns right away if it has already passed.
+   * @param deadline The deadline as read from the pacer's time source
+   */
+  public void waitUntil(long deadline)
+  {
+    long remaining = deadline - timeSource.nanoTime();
+    if (remaining > spinNanos)
+    {
+      long sleep = remaining - spinNanos;
+      long start = timeSource.nanoTime();
+      LockSupport.parkNanos(sleep);
+      long overshoot = timeSource.nanoTime() - start - sleep;
+
+      // Wake up early enough for the worst recent overshoot, slowly forgetting old ones
+      if (overshoot > spinNanos) spinNanos = Math.min(overshoot + MIN_SPIN_NANOS, MAX_SPIN_NANOS);
+      else spinNanos = Math.max(spinNanos - (spinNanos - Math.max(overshoot, 0)) / 16, MIN_SPIN_NANOS);
+    }
+
+    while (timeSource.nanoTime() < deadline)
+      Thread.yield();
+    lastOvershoot = timeSource.nanoTime() - deadline;
+  }
+
+  /**
+   * Get how late the last wait returned
+   * @return The time between the deadline and returning in nanoseconds
+   */
+  public long getLastOvershoot()
+  {
+    return lastOvershoot;
+  }
+}
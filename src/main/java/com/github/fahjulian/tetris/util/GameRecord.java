@@ -0,0 +1,70 @@
+package com.github.fahjulian.tetris.util;
+
+/**
+ * One finished game in the history of the database
+ */
+public class GameRecord
+{
+  private final long playedAt;
+  private final int score;
+  private final int lines;
+  private final int pieces;
+  private final long duration;
+  private final long seed;
+
+  /**
+   * Constructs a new game record
+   * @param playedAt When the game ended, in milliseconds since the epoch
+   * @param score Final score
+   * @param lines Amount of cleared rows
+   * @param pieces Amount of locked tiles
+   * @param duration Duration of the game in game time, in milliseconds
+   * @param seed Seed of the game's tile sequence
+   */
+  public GameRecord(long playedAt, int score, int lines, int pieces, long duration, long seed)
+  {
+    this.playedAt = playedAt;
+    this.score = score;
+    this.lines = lines;
+    this.pieces = pieces;
+    this.duration = duration;
+    this.seed = seed;
+  }
+
+  public long getPlayedAt()
+  {
+    return playedAt;
+  }
+
+  public int getScore()
+  {
+    return score;
+  }
+
+  public int getLines()
+  {
+    return lines;
+  }
+
+  public int getPieces()
+  {
+    return pieces;
+  }
+
+  public long getDuration()
+  {
+    return duration;
+  }
+
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("%tF %<tT: score %d, lines %d, pieces %d, %.1fs, seed %d", playedAt, score, lines, pieces,
+        duration / 1000.0, seed);
+  }
+}
@@ -0,0 +1,122 @@
+package com.github.fahjulian.tetris.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue of timestamped key events from exactly one producer thread (e.g. the event
+ * dispatch thread) to exactly one consumer thread (e.g. the game thread). Neither side ever locks
+ * or creates objects.
+ */
+public class KeyEventQueue
+{
+  private final int capacity;
+  private final int mask;
+  private final int[] keyCodes;
+  private final boolean[] pressed;
+  private final long[] timestamps;
+  /** The index of the next event to poll, only written by the consumer */
+  private final AtomicLong head;
+  /** The index of the next event to offer, only written by the producer */
+  private final AtomicLong tail;
+  /** The producer's last read of {@link #head} */
+  private long cachedHead;
+  /** The consumer's last read of {@link #tail} */
+  private long cachedTail;
+
+  // The last polled event
+  private int keyCode;
+  private boolean keyPressed;
+  private long timestamp;
+
+  /**
+   * Constructs a new, empty queue
+   * @param capacity The maximum amount of queued events, rounded up to a power of two
+   */
+  public KeyEventQueue(int capacity)
+  {
+    this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+    this.mask = this.capacity - 1;
+    this.keyCodes = new int[this.capacity];
+    this.pressed = new boolean[this.capacity];
+    this.timestamps = new long[this.capacity];
+    this.head = new AtomicLong();
+    this.tail = new AtomicLong();
+  }
+
+  /**
+   * Add an event. May only be called by the producer thread.
+   * @param keyCode The code of the key, see {@code KeyEvent}
+   * @param pressed Whether the key was pressed or released
+   * @param timestamp When the event happened, in {@code System.nanoTime()}
+   * @return Whether the event was added, or dropped because the queue is full
+   */
+  public boolean offer(int keyCode, boolean pressed, long timestamp)
+  {
+    long t = tail.get();
+    if (t - cachedHead >= capacity)
+    {
+      cachedHead = head.get();
+      if (t - cachedHead >= capacity) return false;
+    }
+
+    int index = (int) t & mask;
+    this.keyCodes[index] = keyCode;
+    this.pressed[index] = pressed;
+    this.timestamps[index] = timestamp;
+    // Publishes the event written above to the consumer
+    tail.lazySet(t + 1);
+    return true;
+  }
+
+  /**
+   * Take the oldest event, which can then be read with {@link #getKeyCode()},
+   * {@link #isPressed()} and {@link #getTimestamp()}. May only be called by the consumer thread.
+   * @return Whether there was an event
+   */
+  public boolean poll()
+  {
+    long h = head.get();
+    if (h >= cachedTail)
+    {
+      cachedTail = tail.get();
+      if (h >= cachedTail) return false;
+    }
+
+    int index = (int) h & mask;
+    keyCode = keyCodes[index];
+    keyPressed = pressed[index];
+    timestamp = timestamps[index];
+    // Hands the slot back to the producer
+    head.lazySet(h + 1);
+    return true;
+  }
+
+  /**
+   * @return The key code of the last polled event
+   */
+  public int getKeyCode()
+  {
+    return keyCode;
+  }
+
+  /**
+   * @return Whether the key of the last polled event was pressed or released
+   */
+  public boolean isPressed()
+  {
+    return keyPressed;
+  }
+
+  /**
+   * @return When the last polled event happened, in {@code System.nanoTime()}
+   */
+  public long getTimestamp()
+  {
+    return timestamp;
+  }
+
+  public int getCapacity()
+  {
+    return capacity;
+  }
+}
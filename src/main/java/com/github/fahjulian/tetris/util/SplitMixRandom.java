@@ -0,0 +1,62 @@
+package com.github.fahjulian.tetris.util;
+
+/**
+ * Small, fast random number generator (SplitMix64) whose whole state is a single {@code long},
+ * so it can be seeded, saved and restored exactly. Not thread safe, every user should own one.
+ */
+public class SplitMixRandom
+{
+  private static final long GOLDEN_GAMMA;
+
+  private long state;
+
+  static
+  {
+    GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  }
+
+  /**
+   * Constructs a new generator
+   * @param seed The initial state
+   */
+  public SplitMixRandom(long seed)
+  {
+    this.state = seed;
+  }
+
+  public long nextLong()
+  {
+    long z = (state += GOLDEN_GAMMA);
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Get a uniformly distributed int
+   * @param bound The upper bound (exclusive), must be positive
+   * @return A random int between 0 (inclusive) and {@code bound} (exclusive)
+   */
+  public int nextInt(int bound)
+  {
+    // Use the upper 31 bits and reject the last incomplete range to avoid modulo bias
+    int bits, value;
+    do
+    {
+      bits = (int) (nextLong() >>> 33);
+      value = bits % bound;
+    } 
+    while (bits - value + (bound - 1) < 0);
+    return value;
+  }
+
+  public long getState()
+  {
+    return state;
+  }
+
+  public void setState(long state)
+  {
+    this.state = state;
+  }
+}
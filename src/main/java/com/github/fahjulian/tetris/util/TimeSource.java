@@ -0,0 +1,23 @@
+package com.github.fahjulian.tetris.util;
+
+/**
+ * Source of monotonic time for clocks. Can be replaced to run a game faster or slower than
+ * real time, or completely deterministic.
+ */
+public interface TimeSource
+{
+  /** Time source backed by {@link System#nanoTime()} */
+  public static final TimeSource SYSTEM = new TimeSource() {
+    @Override
+    public long nanoTime()
+    {
+      return System.nanoTime();
+    }
+  };
+
+  /**
+   * Get the current time of this source
+   * @return Current time in nanoseconds, only meaningful relative to other readings
+   */
+  public long nanoTime();
+}